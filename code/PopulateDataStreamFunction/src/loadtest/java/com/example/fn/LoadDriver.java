@@ -0,0 +1,201 @@
+// Copyright (c)  2022,  Oracle and/or its affiliates.
+// Licensed under the Universal Permissive License v 1.0 as shown at https://oss.oracle.com/licenses/upl.
+
+//Runs the invocations of a load test from a fixed no. of concurrent callers, and reports the throughput
+//in messages per second and the latency percentiles of the invocations.
+
+package com.example.fn;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Handler;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+final class LoadDriver {
+
+	private static final Logger LOGGER = Logger.getLogger(LoadDriver.class.getName());
+	// returned by an invocation that found no work this time
+	static final int IDLE = -2;
+	// pause of a caller after an idle invocation
+	private static final long IDLE_BACKOFF_MILLIS = 20;
+
+	private LoadDriver() {
+	}
+
+	/**
+	 * @param invocations
+	 * @param concurrency
+	 * @param invocation
+	 * @return Report
+	 * @throws InterruptedException
+	 *
+	 *                              This method runs up to the given no. of
+	 *                              invocations, concurrency of them at a time. A
+	 *                              caller stops early when its invocation has no
+	 *                              more work. Idle invocations are counted apart
+	 *                              and not in the latencies.
+	 */
+	static Report run(int invocations, int concurrency, Invocation invocation) throws InterruptedException {
+
+		LatencyHistogram latencies = new LatencyHistogram();
+		AtomicInteger started = new AtomicInteger();
+		LongAdder completed = new LongAdder();
+		LongAdder failed = new LongAdder();
+		LongAdder idle = new LongAdder();
+		LongAdder messages = new LongAdder();
+
+		ExecutorService callers = Executors.newFixedThreadPool(concurrency);
+		long start = System.nanoTime();
+
+		for (int i = 0; i < concurrency; i++) {
+			int caller = i;
+			callers.execute(() -> {
+				while (started.getAndIncrement() < invocations) {
+
+					long invocationStart = System.nanoTime();
+					try {
+						int handled = invocation.invoke(caller);
+						if (handled == IDLE) {
+							idle.increment();
+							Thread.sleep(IDLE_BACKOFF_MILLIS);
+							continue;
+						}
+						if (handled < 0) {
+							return;
+						}
+						messages.add(handled);
+					} catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+						return;
+					} catch (Exception e) {
+						failed.increment();
+						LOGGER.log(Level.WARNING, "Invocation failed. {0}", e.getLocalizedMessage());
+					}
+					latencies.record(System.nanoTime() - invocationStart);
+					completed.increment();
+				}
+			});
+		}
+
+		callers.shutdown();
+		callers.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+
+		return new Report(System.nanoTime() - start, completed.sum(), failed.sum(), idle.sum(), messages.sum(),
+				latencies.snapshotAndReset());
+	}
+
+	/**
+	 * @param settings
+	 *
+	 *                 This method sets the level of the log, WARNING unless set
+	 *                 by logLevel, so that the log of every message does not
+	 *                 slow down the Functions.
+	 */
+	static void configureLogging(Settings settings) {
+
+		Level level = Level.parse(settings.stringValue("logLevel", "WARNING"));
+		Logger root = Logger.getLogger("");
+		root.setLevel(level);
+		for (Handler handler : root.getHandlers()) {
+			handler.setLevel(level);
+		}
+	}
+
+	// One invocation of the Function under test
+	@FunctionalInterface
+	interface Invocation {
+
+		/**
+		 * @param caller
+		 * @return int Returns the no. of messages handled by the invocation, IDLE
+		 *         if it found no work this time, or -1 if the caller has no more
+		 *         work.
+		 * @throws Exception
+		 *                   An invocation that failed as a whole.
+		 */
+		int invoke(int caller) throws Exception;
+	}
+
+	static final class Report {
+
+		private final long elapsedNanos;
+		private final long invocations;
+		private final long failedInvocations;
+		private final long idleInvocations;
+		private final long messages;
+		private final LatencyHistogram.Snapshot latencies;
+
+		private Report(long elapsedNanos, long invocations, long failedInvocations, long idleInvocations,
+				long messages, LatencyHistogram.Snapshot latencies) {
+			this.elapsedNanos = elapsedNanos;
+			this.invocations = invocations;
+			this.failedInvocations = failedInvocations;
+			this.idleInvocations = idleInvocations;
+			this.messages = messages;
+			this.latencies = latencies;
+		}
+
+		/**
+		 * @param function
+		 * @return String Returns the report of the run, in two lines.
+		 */
+		String format(String function) {
+
+			double seconds = elapsedNanos / 1e9;
+			return String.format(
+					"%s: %d invocations (%d failed), %d idle, %d messages in %.1f s, %.0f msgs/s%n"
+							+ "  invocation latency ms: mean=%.1f p50=%.1f p90=%.1f p99=%.1f max=%.1f",
+					function, invocations, failedInvocations, idleInvocations, messages, seconds, messages / seconds,
+					latencies.getMeanMicros() / 1e3, latencies.getPercentileMicros(50) / 1e3,
+					latencies.getPercentileMicros(90) / 1e3, latencies.getPercentileMicros(99) / 1e3,
+					latencies.getMaxMicros() / 1e3);
+		}
+	}
+
+	// The key=value arguments of a load test
+	static final class Settings {
+
+		private final Map<String, String> values = new HashMap<>();
+
+		/**
+		 * @param args
+		 *
+		 *             Every argument is a key=value pair, the value may contain
+		 *             further = signs.
+		 */
+		Settings(String[] args) {
+
+			for (String arg : args) {
+				int separator = arg.indexOf('=');
+				if (separator > 0) {
+					values.put(arg.substring(0, separator).trim(), arg.substring(separator + 1).trim());
+				} else if (!arg.isBlank()) {
+					LOGGER.log(Level.WARNING, "Ignored argument {0}, expected key=value.", arg);
+				}
+			}
+		}
+
+		String stringValue(String key, String defaultValue) {
+			return values.getOrDefault(key, defaultValue);
+		}
+
+		int intValue(String key, int defaultValue) {
+			return values.containsKey(key) ? Integer.parseInt(values.get(key)) : defaultValue;
+		}
+
+		long longValue(String key, long defaultValue) {
+			return values.containsKey(key) ? Long.parseLong(values.get(key)) : defaultValue;
+		}
+
+		double doubleValue(String key, double defaultValue) {
+			return values.containsKey(key) ? Double.parseDouble(values.get(key)) : defaultValue;
+		}
+	}
+
+}
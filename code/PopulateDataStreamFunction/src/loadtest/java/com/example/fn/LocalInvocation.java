@@ -0,0 +1,137 @@
+// Copyright (c)  2022,  Oracle and/or its affiliates.
+// Licensed under the Universal Permissive License v 1.0 as shown at https://oss.oracle.com/licenses/upl.
+
+//One local call of a Function: the request headers and body as the FDK passes them, and the status
+//code the Function sets. The FDK context types are implemented by proxies that answer the calls
+//made by the Functions and return empty values for all the others.
+
+package com.example.fn;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Function;
+
+import com.fnproject.fn.api.Headers;
+import com.fnproject.fn.api.InputEvent;
+import com.fnproject.fn.api.InvocationContext;
+import com.fnproject.fn.api.httpgateway.HTTPGatewayContext;
+
+final class LocalInvocation {
+
+	private final Headers headers;
+	private final byte[] body;
+	private volatile int statusCode = 200;
+
+	/**
+	 * @param headers
+	 * @param body
+	 */
+	LocalInvocation(Map<String, String> headers, byte[] body) {
+		this.headers = Headers.fromMap(headers);
+		this.body = body;
+	}
+
+	/**
+	 * @return int Returns the status code set by the Function, 200 if it set
+	 *         none.
+	 */
+	int getStatusCode() {
+		return statusCode;
+	}
+
+	/**
+	 * @return HTTPGatewayContext Returns the gateway context of the call.
+	 */
+	HTTPGatewayContext gatewayContext() {
+
+		InvocationContext invocationContext = proxy(InvocationContext.class, (method, args) -> {
+			// no Fn-Deadline header, so the Functions use function_timeout_seconds
+			return "getRequestHeaders".equals(method.getName()) ? Headers.emptyHeaders() : null;
+		});
+
+		return proxy(HTTPGatewayContext.class, (method, args) -> {
+			switch (method.getName()) {
+			case "getInvocationContext":
+				return invocationContext;
+			case "getHeaders":
+				return headers;
+			case "setStatusCode":
+				statusCode = (Integer) args[0];
+				return null;
+			default:
+				return null;
+			}
+		});
+	}
+
+	/**
+	 * @return InputEvent Returns the input event of the call, with the body.
+	 */
+	InputEvent inputEvent() {
+
+		return proxy(InputEvent.class, (method, args) -> {
+			switch (method.getName()) {
+			case "consumeBody":
+				@SuppressWarnings("unchecked")
+				Function<InputStream, Object> consumer = (Function<InputStream, Object>) args[0];
+				return consumer.apply(new ByteArrayInputStream(body));
+			case "getHeaders":
+				return headers;
+			default:
+				return null;
+			}
+		});
+	}
+
+	private static <T> T proxy(Class<T> type, Handler handler) {
+
+		Object proxy = Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[] { type },
+				(instance, method, args) -> {
+					if (method.getDeclaringClass() == Object.class) {
+						return objectMethod(instance, method, args);
+					}
+					Object result = handler.handle(method, args);
+					return result != null ? result : emptyValue(method.getReturnType());
+				});
+		return type.cast(proxy);
+	}
+
+	private static Object objectMethod(Object instance, Method method, Object[] args) {
+
+		switch (method.getName()) {
+		case "equals":
+			return instance == args[0];
+		case "hashCode":
+			return System.identityHashCode(instance);
+		default:
+			return "LocalInvocation proxy";
+		}
+	}
+
+	private static Object emptyValue(Class<?> type) {
+
+		if (type == Optional.class) {
+			return Optional.empty();
+		}
+		if (type == boolean.class) {
+			return false;
+		}
+		if (type == int.class) {
+			return 0;
+		}
+		if (type == long.class) {
+			return 0L;
+		}
+		return null;
+	}
+
+	@FunctionalInterface
+	private interface Handler {
+		Object handle(Method method, Object[] args);
+	}
+
+}
@@ -0,0 +1,100 @@
+// Copyright (c)  2022,  Oracle and/or its affiliates.
+// Licensed under the Universal Permissive License v 1.0 as shown at https://oss.oracle.com/licenses/upl.
+
+//An in-memory Vault for load tests. It holds the secrets by name and serves both the Vault calls
+//that create them and the Secrets call that reads them, through the fault injection of the service.
+
+package com.example.fn;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import com.oracle.bmc.model.BmcException;
+import com.oracle.bmc.secrets.model.Base64SecretBundleContentDetails;
+import com.oracle.bmc.secrets.model.SecretBundle;
+import com.oracle.bmc.secrets.requests.GetSecretBundleByNameRequest;
+import com.oracle.bmc.secrets.responses.GetSecretBundleByNameResponse;
+import com.oracle.bmc.vault.model.Base64SecretContentDetails;
+import com.oracle.bmc.vault.model.CreateSecretDetails;
+import com.oracle.bmc.vault.model.Secret;
+import com.oracle.bmc.vault.model.SecretSummary;
+import com.oracle.bmc.vault.requests.CreateSecretRequest;
+import com.oracle.bmc.vault.requests.ListSecretsRequest;
+import com.oracle.bmc.vault.responses.CreateSecretResponse;
+import com.oracle.bmc.vault.responses.ListSecretsResponse;
+
+final class LocalVault implements SecretsApi, VaultsApi {
+
+	private final FaultInjection faults;
+	// secret contents by secret name
+	private final ConcurrentMap<String, String> secrets = new ConcurrentHashMap<>();
+
+	LocalVault(FaultInjection faults) {
+		this.faults = faults;
+	}
+
+	/**
+	 * @param secretName
+	 * @param content
+	 *
+	 *                   This method stores a secret without any fault, to prepare
+	 *                   a load test.
+	 */
+	void putSecret(String secretName, String content) {
+		secrets.put(secretName, content);
+	}
+
+	/**
+	 * @return int Returns the no. of secrets stored.
+	 */
+	int secretCount() {
+		return secrets.size();
+	}
+
+	@Override
+	public GetSecretBundleByNameResponse getSecretBundleByName(GetSecretBundleByNameRequest request) {
+
+		faults.apply("GetSecretBundleByName");
+		String content = secrets.get(request.getSecretName());
+
+		if (content == null) {
+			throw new BmcException(404, "NotAuthorizedOrNotFound", "Secret " + request.getSecretName() + " not found.",
+					null);
+		}
+
+		return GetSecretBundleByNameResponse.builder()
+				.secretBundle(SecretBundle.builder()
+						.secretBundleContent(Base64SecretBundleContentDetails.builder().content(content).build()).build())
+				.build();
+	}
+
+	@Override
+	public ListSecretsResponse listSecrets(ListSecretsRequest request) {
+
+		faults.apply("ListSecrets");
+		List<SecretSummary> items = new ArrayList<>();
+
+		secrets.keySet().stream().filter(name -> request.getName() == null || request.getName().equals(name))
+				.forEach(name -> items.add(SecretSummary.builder().secretName(name).build()));
+
+		return ListSecretsResponse.builder().items(items).build();
+	}
+
+	@Override
+	public CreateSecretResponse createSecret(CreateSecretRequest request) {
+
+		faults.apply("CreateSecret");
+		CreateSecretDetails details = request.getCreateSecretDetails();
+		String content = ((Base64SecretContentDetails) details.getSecretContent()).getContent();
+
+		if (secrets.putIfAbsent(details.getSecretName(), content) != null) {
+			throw new BmcException(409, "Conflict", "Secret " + details.getSecretName() + " already exists.", null);
+		}
+
+		return CreateSecretResponse.builder().secret(Secret.builder().secretName(details.getSecretName()).build())
+				.build();
+	}
+
+}
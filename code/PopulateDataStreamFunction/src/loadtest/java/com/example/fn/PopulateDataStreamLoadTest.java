@@ -0,0 +1,92 @@
+// Copyright (c)  2022,  Oracle and/or its affiliates.
+// Licensed under the Universal Permissive License v 1.0 as shown at https://oss.oracle.com/licenses/upl.
+
+//Load test of PopulateDataStreamFunction without OCI. Every invocation stores a request of new messages
+//in the local data stream and creates the Vault secrets named by them in the local Vault.
+//The arguments are key=value pairs, see the Load tests section of the README.
+
+package com.example.fn;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+public final class PopulateDataStreamLoadTest {
+
+	private PopulateDataStreamLoadTest() {
+	}
+
+	public static void main(String[] args) throws Exception {
+
+		LoadDriver.Settings settings = new LoadDriver.Settings(args);
+		LoadDriver.configureLogging(settings);
+
+		int invocations = settings.intValue("invocations", 200);
+		int warmupInvocations = settings.intValue("warmupInvocations", 20);
+		int concurrency = settings.intValue("concurrency", 4);
+		int batchSize = settings.intValue("batchSize", 10);
+		int secrets = settings.intValue("secrets", 8);
+		String dataStreamOCID = requiredVariable("data_stream_ocid");
+
+		LocalStreaming streaming = new LocalStreaming(FaultInjection.of(settings, "streaming"));
+		LocalVault vault = new LocalVault(FaultInjection.of(settings, "vault"));
+		streaming.createStream(dataStreamOCID, settings.intValue("partitions", 1));
+		LocalOciClients.install(streaming, vault);
+
+		PopulateDataStreamFunction function = new PopulateDataStreamFunction();
+		AtomicLong sequence = new AtomicLong();
+
+		LoadDriver.Invocation invocation = caller -> {
+			String requestBody = requestBody(sequence.getAndAdd(batchSize), batchSize, secrets);
+			LocalInvocation call = new LocalInvocation(Map.of("Authorization", "Bearer local-token"),
+					requestBody.getBytes(UTF_8));
+			String response = function.handleRequest(call.gatewayContext(), requestBody);
+
+			if (call.getStatusCode() != 200) {
+				throw new IllegalStateException("Function returned status " + call.getStatusCode() + ". " + response);
+			}
+			return batchSize;
+		};
+
+		LoadDriver.run(warmupInvocations, concurrency, invocation);
+		LoadDriver.Report report = LoadDriver.run(invocations, concurrency, invocation);
+
+		System.out.println(report.format("PopulateDataStreamFunction"));
+		System.out.println("  data stream messages: " + streaming.messageCount(dataStreamOCID));
+		System.out.println("  vault secrets: " + vault.secretCount());
+
+	}
+
+	/**
+	 * @param firstMessage
+	 * @param batchSize
+	 * @param secrets
+	 * @return String Returns a single message request, or an array of them if
+	 *         batchSize is above 1, with messages numbered from firstMessage.
+	 */
+	private static String requestBody(long firstMessage, int batchSize, int secrets) {
+
+		StringBuilder body = new StringBuilder(batchSize > 1 ? "[" : "");
+
+		for (long i = firstMessage; i < firstMessage + batchSize; i++) {
+			body.append(i == firstMessage ? "" : ",").append("{\"streamKey\":\"order-").append(i)
+					.append("\",\"streamMessage\":{\"vaultSecretName\":\"local-token-")
+					.append(i % Math.max(1, secrets)).append("\",\"targetRestApi\":\"http://127.0.0.1/orders/")
+					.append(i).append("\",\"targetRestApiOperation\":\"PUT\",\"targetRestApiPayload\":{\"orderId\":")
+					.append(i).append("},\"targetRestApiHeaders\":[]}}");
+		}
+
+		return body.append(batchSize > 1 ? "]" : "").toString();
+	}
+
+	private static String requiredVariable(String name) {
+
+		String value = System.getenv(name);
+		if (value == null || value.isBlank()) {
+			throw new IllegalStateException("Set the environment variable " + name + ".");
+		}
+		return value;
+	}
+
+}
@@ -0,0 +1,60 @@
+// Copyright (c)  2022,  Oracle and/or its affiliates.
+// Licensed under the Universal Permissive License v 1.0 as shown at https://oss.oracle.com/licenses/upl.
+
+//Reads the optional tuning values from the Function Application configuration.
+
+package com.example.fn;
+
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+final class FunctionConfig {
+
+	private static final Logger LOGGER = Logger.getLogger(FunctionConfig.class.getName());
+
+	private FunctionConfig() {
+	}
+
+	/**
+	 * @param name
+	 * @param defaultValue
+	 * @return String
+	 * 
+	 *         This method reads a configuration value of the Function Application,
+	 *         falling back to the default when it is not set.
+	 */
+	static String stringValue(String name, String defaultValue) {
+
+		String value = System.getenv().get(name);
+
+		return value == null || value.isBlank() ? defaultValue : value.trim();
+
+	}
+
+	/**
+	 * @param name
+	 * @param defaultValue
+	 * @return int
+	 * 
+	 *         This method reads a numeric configuration value of the Function
+	 *         Application, falling back to the default when it is not set or
+	 *         invalid.
+	 */
+	static int intValue(String name, int defaultValue) {
+
+		String value = stringValue(name, null);
+
+		if (value == null) {
+			return defaultValue;
+		}
+		try {
+			return Integer.parseInt(value);
+		} catch (NumberFormatException e) {
+			LOGGER.log(Level.WARNING, "Invalid value {0} for configuration {1}, using {2}.",
+					new Object[] { value, name, defaultValue });
+			return defaultValue;
+		}
+
+	}
+
+}
@@ -0,0 +1,146 @@
+// Copyright (c)  2022,  Oracle and/or its affiliates.
+// Licensed under the Universal Permissive License v 1.0 as shown at https://oss.oracle.com/licenses/upl.
+
+//Remembers which secret names are already present in the Vault, for the lifetime of the Function container.
+//A secret known to exist is not looked up again until its entry expires. A secret found missing is
+//remembered for a short time only. Concurrent requests for the same secret name share one lookup and creation.
+
+package com.example.fn;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+import java.util.function.Predicate;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import com.oracle.bmc.model.BmcException;
+
+class KnownSecretCache {
+
+	private static final Logger LOGGER = Logger.getLogger(KnownSecretCache.class.getName());
+	private static final long KNOWN_TTL_NANOS = TimeUnit.SECONDS
+			.toNanos(FunctionConfig.intValue("known_secret_ttl_seconds", 3600));
+	private static final long MISSING_TTL_NANOS = TimeUnit.SECONDS
+			.toNanos(FunctionConfig.intValue("missing_secret_ttl_seconds", 10));
+	private static final int MAX_ENTRIES = FunctionConfig.intValue("known_secret_max_entries", 10000);
+
+	private final Predicate<String> secretExists;
+	private final BiConsumer<String, String> secretCreator;
+	// secret names in least recently used order, with the time their state expires
+	private final Map<String, SecretState> secretStates = new LinkedHashMap<>(16, 0.75f, true) {
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<String, SecretState> eldest) {
+			return size() > MAX_ENTRIES;
+		}
+	};
+	// secret provisioning in progress, per secret name
+	private final ConcurrentMap<String, CompletableFuture<Void>> provisioning = new ConcurrentHashMap<>();
+
+	/**
+	 * @param secretExists
+	 * @param secretCreator
+	 *
+	 *                      secretExists looks the secret name up in the Vault,
+	 *                      secretCreator creates the secret from its name and the
+	 *                      authorization header.
+	 */
+	KnownSecretCache(Predicate<String> secretExists, BiConsumer<String, String> secretCreator) {
+		this.secretExists = secretExists;
+		this.secretCreator = secretCreator;
+	}
+
+	/**
+	 * @param vaultSecretName
+	 * @param authorizationHeader
+	 *
+	 *                            This method makes sure the secret is present in
+	 *                            the Vault, creating it if needed. A secret known to
+	 *                            exist results in no Vault call.
+	 */
+	void ensureSecret(String vaultSecretName, String authorizationHeader) {
+
+		SecretState state;
+		synchronized (secretStates) {
+			state = secretStates.get(vaultSecretName);
+		}
+
+		if (state != null && state.exists && state.isFresh()) {
+			return;
+		}
+
+		CompletableFuture<Void> provision = new CompletableFuture<>();
+		CompletableFuture<Void> inProgress = provisioning.putIfAbsent(vaultSecretName, provision);
+
+		if (inProgress != null) {
+			try {
+				inProgress.join();
+				return;
+			} catch (CompletionException e) {
+				throw e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause() : e;
+			}
+		}
+
+		try {
+			// a secret found missing a moment ago is created without looking it up
+			// again
+			boolean knownMissing = state != null && !state.exists && state.isFresh();
+
+			if (knownMissing || !secretExists.test(vaultSecretName)) {
+				remember(vaultSecretName, false);
+				createSecret(vaultSecretName, authorizationHeader);
+			}
+			remember(vaultSecretName, true);
+			provision.complete(null);
+
+		} catch (RuntimeException e) {
+			provision.completeExceptionally(e);
+			throw e;
+		} finally {
+			provisioning.remove(vaultSecretName, provision);
+		}
+
+	}
+
+	private void createSecret(String vaultSecretName, String authorizationHeader) {
+		try {
+			secretCreator.accept(vaultSecretName, authorizationHeader);
+		} catch (BmcException e) {
+			if (e.getStatusCode() != 409) {
+				throw e;
+			}
+			// created meanwhile by another Function container
+			LOGGER.log(Level.INFO, "Secret {0} already exists.", vaultSecretName);
+		}
+	}
+
+	private void remember(String vaultSecretName, boolean exists) {
+		long expiresAt = System.nanoTime() + (exists ? KNOWN_TTL_NANOS : MISSING_TTL_NANOS);
+		synchronized (secretStates) {
+			secretStates.put(vaultSecretName, new SecretState(exists, expiresAt));
+		}
+	}
+
+	private static final class SecretState {
+
+		private final boolean exists;
+		private final long expiresAt;
+
+		SecretState(boolean exists, long expiresAt) {
+			this.exists = exists;
+			this.expiresAt = expiresAt;
+		}
+
+		boolean isFresh() {
+			return System.nanoTime() - expiresAt < 0;
+		}
+	}
+
+}
@@ -5,30 +5,33 @@
 // It is invoked when the Source Application/s post data to the REST API exposed using API Gateway.
 package com.example.fn;
 
-import java.util.Arrays;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
 import java.util.logging.Logger;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.JsonMappingException;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
 import com.fnproject.fn.api.Headers;
 import com.fnproject.fn.api.httpgateway.HTTPGatewayContext;
-import com.oracle.bmc.auth.ResourcePrincipalAuthenticationDetailsProvider;
 import com.oracle.bmc.model.BmcException;
-import com.oracle.bmc.streaming.StreamAdminClient;
-import com.oracle.bmc.streaming.StreamClient;
 import com.oracle.bmc.streaming.model.PutMessagesDetails;
 import com.oracle.bmc.streaming.model.PutMessagesDetailsEntry;
 import com.oracle.bmc.streaming.model.PutMessagesResultEntry;
-import com.oracle.bmc.streaming.model.Stream;
-import com.oracle.bmc.streaming.requests.GetStreamRequest;
 import com.oracle.bmc.streaming.requests.PutMessagesRequest;
-import com.oracle.bmc.streaming.responses.GetStreamResponse;
-import com.oracle.bmc.streaming.responses.PutMessagesResponse;
-import com.oracle.bmc.vault.VaultsClient;
 import com.oracle.bmc.vault.model.Base64SecretContentDetails;
 import com.oracle.bmc.vault.model.CreateSecretDetails;
 import com.oracle.bmc.vault.model.SecretContentDetails;
@@ -39,12 +42,22 @@ import com.oracle.bmc.vault.responses.ListSecretsResponse;
 
 public class PopulateDataStreamFunction {
 	private static final Logger LOGGER = Logger.getLogger(PopulateDataStreamFunction.class.getName());
-	private final ResourcePrincipalAuthenticationDetailsProvider provider = ResourcePrincipalAuthenticationDetailsProvider
-			.builder().build();
+	private final StreamAdminApi streamAdminClient = OciClients.streamAdminClient();
+	// Secret names known to be present in the Vault, shared by the invocations of
+	// the container
+	private final KnownSecretCache knownSecrets = new KnownSecretCache(
+			vaultSecretName -> !checkSecretInVault(vaultSecretName),
+			(vaultSecretName, authorizationHeader) -> createSecretInVault(authorizationHeader, vaultSecretName));
 	private static final String VAULT_OCID = System.getenv().get("vault_ocid");
 	private static final String VAULT_COMPARTMENT_OCID = System.getenv().get("vault_compartment_ocid");
 	private static final String VAULT_KEY_OCID = System.getenv().get("vault_key_ocid");
 	private static final String DATA_STREAM_OCID = System.getenv().get("data_stream_ocid");
+	private static final ObjectReader JSON_READER = new ObjectMapper().reader();
+	// PutMessages accepts up to 1 MB of base64 encoded keys and values per request
+	private static final int MAX_BYTES_PER_REQUEST = 1024 * 1024;
+	private static final int MAX_ENTRIES_PER_REQUEST = FunctionConfig.intValue("put_messages_batch_size", 100);
+	// set when the blocking calls of the container run on virtual threads
+	private static final Executor SECRET_EXECUTOR = TaskExecutors.virtualThreads();
 
 	/**
 	 * @param httpGatewayContext
@@ -67,27 +80,34 @@ public class PopulateDataStreamFunction {
 		Headers headers = httpGatewayContext.getHeaders();
 		Optional<String> authorizationHeaderOpt = headers.get("Authorization");
 
-		ObjectMapper objectMapper = new ObjectMapper();
 		try {
-			JsonNode jsonNode = objectMapper.readTree(requestBody);
+			long parseStart = System.nanoTime();
+			JsonNode jsonNode = JSON_READER.readTree(requestBody);
+			FunctionMetrics.recordLatency("parse", parseStart);
+
+			// An array of messages is stored as a batch
+			if (jsonNode.isArray()) {
+				return storeMessageBatch(jsonNode, authorizationHeaderOpt);
+			}
 
 			// Get the message key and the actual content to be stored in the stream.
 			// streamKey will be used as the stream message's key
 
 			streamKey = jsonNode.path("streamKey").asText();
 
-			streamMessage = jsonNode.path("streamMessage").toString();
-			// To get the vaultSecretName from streamMessage
-			JsonNode streamMessageNode = objectMapper.readTree(streamMessage);
+			JsonNode streamMessageNode = jsonNode.path("streamMessage");
+			streamMessage = streamMessageNode.toString();
 			if (authorizationHeaderOpt.isPresent()) {
 
 				String authorizationHeader = authorizationHeaderOpt.get();
-				vaultSecretName = streamMessageNode.get("vaultSecretName").asText();
+				// To get the vaultSecretName from streamMessage
+				DataSyncMessage message = DataSyncMessage.read(streamMessageNode);
+				vaultSecretName = message == null ? "" : message.getVaultSecretName();
 
 				// If secret with the name vaultSecretName is not already present,
 				// create a secret
-				if (checkSecretInVault(vaultSecretName)) {
-					createSecretInVault(authorizationHeader, vaultSecretName);
+				if (!vaultSecretName.isEmpty()) {
+					knownSecrets.ensureSecret(vaultSecretName, authorizationHeader);
 				}
 
 			}
@@ -103,6 +123,9 @@ public class PopulateDataStreamFunction {
 			LOGGER.severe(jsonex.getLocalizedMessage());
 			httpGatewayContext.setStatusCode(500);
 			return "Error occured in processing the payload ";
+
+		} finally {
+			FunctionMetrics.logAndReset();
 		}
 
 		return "success";
@@ -118,14 +141,19 @@ public class PopulateDataStreamFunction {
 	 */
 	private boolean checkSecretInVault(String vaultSecretName) {
 
-		VaultsClient vaultClient = new VaultsClient(provider);
+		VaultsApi vaultClient = OciClients.vaultsClient();
 
 		ListSecretsRequest listSecretsRequest = ListSecretsRequest.builder().name(vaultSecretName).vaultId(VAULT_OCID)
 				.compartmentId(VAULT_COMPARTMENT_OCID).build();
 
-		ListSecretsResponse listSecretsResponse = vaultClient.listSecrets(listSecretsRequest);
+		long start = System.nanoTime();
+		ListSecretsResponse listSecretsResponse;
+		try {
+			listSecretsResponse = vaultClient.listSecrets(listSecretsRequest);
+		} finally {
+			FunctionMetrics.recordLatency("vault", start);
+		}
 		List<SecretSummary> items = listSecretsResponse.getItems();
-		vaultClient.close();
 		return items.isEmpty();
 
 	}
@@ -144,7 +172,7 @@ public class PopulateDataStreamFunction {
 	 */
 
 	private void createSecretInVault(String authorizationHeader, String vaultSecretName) {
-		VaultsClient vaultClient = new VaultsClient(provider);
+		VaultsApi vaultClient = OciClients.vaultsClient();
 //Create a new secret with content as the authorization header value and name as vaultSecretName
 		Base64SecretContentDetails base64SecretContentDetails = Base64SecretContentDetails.builder()
 				.content(authorizationHeader).name(vaultSecretName).stage(SecretContentDetails.Stage.Current).build();
@@ -157,20 +185,88 @@ public class PopulateDataStreamFunction {
 				.secretContent(base64SecretContentDetails).build();
 		CreateSecretRequest createSecretRequest = CreateSecretRequest.builder().createSecretDetails(createSecretDetails)
 				.build();
-		vaultClient.createSecret(createSecretRequest);
-		vaultClient.close();
+		long start = System.nanoTime();
+		try {
+			vaultClient.createSecret(createSecretRequest);
+		} finally {
+			FunctionMetrics.recordLatency("vault_create", start);
+		}
 
 	}
 
 	/**
-	 * @param streamOCID
-	 * @return Stream This method obtains the Stream object from the stream OCID.
+	 * @param messageNodes
+	 * @param authorizationHeaderOpt
+	 * @return String Returns the offset and partition, or the error, of every
+	 *         message in the order of the request.
+	 * @throws JsonProcessingException
+	 * 
+	 *                                 This method stores a batch of messages in
+	 *                                 the DataSyncStream. Each element of the
+	 *                                 array has the streamKey and streamMessage
+	 *                                 nodes of a single message request.
 	 */
-	private Stream getStream(String streamOCID) {
-		StreamAdminClient streamAdminClient = StreamAdminClient.builder().build(provider);
-		GetStreamResponse getResponse = streamAdminClient
-				.getStream(GetStreamRequest.builder().streamId(streamOCID).build());
-		return getResponse.getStream();
+	private String storeMessageBatch(JsonNode messageNodes, Optional<String> authorizationHeaderOpt)
+			throws JsonProcessingException {
+
+		List<PutMessagesDetailsEntry> entries = new ArrayList<>(messageNodes.size());
+		Set<String> vaultSecretNames = new LinkedHashSet<>();
+
+		for (JsonNode messageNode : messageNodes) {
+
+			String streamKey = messageNode.path("streamKey").asText();
+			JsonNode streamMessageNode = messageNode.path("streamMessage");
+
+			if (authorizationHeaderOpt.isPresent()) {
+				DataSyncMessage message = DataSyncMessage.read(streamMessageNode);
+				if (message != null && !message.getVaultSecretName().isEmpty()) {
+					vaultSecretNames.add(message.getVaultSecretName());
+				}
+			}
+
+			entries.add(PutMessagesDetailsEntry.builder().key(streamKey.getBytes(UTF_8))
+					.value(streamMessageNode.toString().getBytes(UTF_8)).build());
+		}
+
+		// The auth token is stored once per vaultSecretName in the batch
+		if (SECRET_EXECUTOR == null || vaultSecretNames.size() < 2) {
+			for (String vaultSecretName : vaultSecretNames) {
+				knownSecrets.ensureSecret(vaultSecretName, authorizationHeaderOpt.get());
+			}
+		} else {
+			// the secrets are looked up and created at the same time
+			try {
+				CompletableFuture.allOf(vaultSecretNames.stream()
+						.map(vaultSecretName -> CompletableFuture.runAsync(
+								() -> knownSecrets.ensureSecret(vaultSecretName, authorizationHeaderOpt.get()),
+								SECRET_EXECUTOR))
+						.toArray(CompletableFuture<?>[]::new)).join();
+			} catch (CompletionException e) {
+				throw e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause() : e;
+			}
+		}
+
+		List<PutMessagesResultEntry> resultEntries = storeMessagesInStream(entries, DATA_STREAM_OCID);
+
+		ObjectNode response = JsonNodeFactory.instance.objectNode();
+		ArrayNode entryNodes = response.putArray("entries");
+		int failures = 0;
+
+		for (PutMessagesResultEntry entry : resultEntries) {
+			ObjectNode entryNode = entryNodes.addObject();
+			if (entry.getError() != null) {
+				failures++;
+				entryNode.put("error", entry.getError()).put("errorMessage", entry.getErrorMessage());
+			} else {
+				entryNode.put("offset", entry.getOffset()).put("partition", entry.getPartition());
+			}
+		}
+		response.put("failures", failures);
+
+		LOGGER.info("Stored batch of " + entries.size() + " messages with " + failures + " failures.");
+
+		return response.toString();
+
 	}
 
 	/**
@@ -183,17 +279,10 @@ public class PopulateDataStreamFunction {
 	 */
 	private void storeMessageinStream(String message, String streamOCID, String streamKey) {
 
-		StreamClient streamClient = StreamClient.builder().stream(getStream(streamOCID)).build(provider);
-
-		PutMessagesDetails messagesDetails = PutMessagesDetails.builder()
-				.messages(Arrays.asList(
-						PutMessagesDetailsEntry.builder().key(streamKey.getBytes()).value(message.getBytes()).build()))
-				.build();
-		PutMessagesRequest putRequest = PutMessagesRequest.builder().streamId(streamOCID)
-				.putMessagesDetails(messagesDetails).build();
+		List<PutMessagesDetailsEntry> entries = List.of(
+				PutMessagesDetailsEntry.builder().key(streamKey.getBytes(UTF_8)).value(message.getBytes(UTF_8)).build());
 
-		PutMessagesResponse putResponse = streamClient.putMessages(putRequest);
-		for (PutMessagesResultEntry entry : putResponse.getPutMessagesResult().getEntries()) {
+		for (PutMessagesResultEntry entry : storeMessagesInStream(entries, streamOCID)) {
 			if (entry.getError() != null) {
 
 				LOGGER.severe("Put message error " + entry.getErrorMessage());
@@ -204,4 +293,76 @@ public class PopulateDataStreamFunction {
 		}
 
 	}
+
+	/**
+	 * @param entries
+	 * @param streamOCID
+	 * @return List Returns the result of every entry, in the order of the entries.
+	 * 
+	 *         This method stores the messages in the Stream with as few
+	 *         PutMessages calls as the request size and entry limits allow. If a
+	 *         call fails after an earlier call succeeded, the entries of the
+	 *         failed call are reported with the error of the call.
+	 */
+	private List<PutMessagesResultEntry> storeMessagesInStream(List<PutMessagesDetailsEntry> entries,
+			String streamOCID) {
+
+		StreamApi streamClient = StreamClientCache.get(streamOCID, streamAdminClient);
+		List<PutMessagesResultEntry> resultEntries = new ArrayList<>(entries.size());
+		int start = 0;
+
+		while (start < entries.size()) {
+
+			int end = start;
+			int requestBytes = 0;
+			while (end < entries.size() && end - start < MAX_ENTRIES_PER_REQUEST
+					&& (end == start || requestBytes + encodedSize(entries.get(end)) <= MAX_BYTES_PER_REQUEST)) {
+				requestBytes += encodedSize(entries.get(end));
+				end++;
+			}
+
+			List<PutMessagesDetailsEntry> requestEntries = entries.subList(start, end);
+			PutMessagesRequest putRequest = PutMessagesRequest.builder().streamId(streamOCID)
+					.putMessagesDetails(PutMessagesDetails.builder().messages(requestEntries).build()).build();
+
+			long putStart = System.nanoTime();
+			try {
+				resultEntries.addAll(streamClient.putMessages(putRequest).getPutMessagesResult().getEntries());
+
+			} catch (BmcException e) {
+				if (start == 0) {
+					// nothing has been stored, fail the whole request
+					throw e;
+				}
+				LOGGER.severe("Put messages failed for " + requestEntries.size() + " messages. "
+						+ e.getLocalizedMessage());
+				for (int i = start; i < end; i++) {
+					resultEntries.add(PutMessagesResultEntry.builder().error(String.valueOf(e.getStatusCode()))
+							.errorMessage(e.getLocalizedMessage()).build());
+				}
+
+			} finally {
+				FunctionMetrics.recordLatency("put_messages", putStart);
+			}
+
+			start = end;
+		}
+
+		long failed = resultEntries.stream().filter(entry -> entry.getError() != null).count();
+		FunctionMetrics.add("stored", resultEntries.size() - failed);
+		FunctionMetrics.add("failed", failed);
+
+		return resultEntries;
+
+	}
+
+	/**
+	 * @param entry
+	 * @return int Returns the size of the entry once base64 encoded in the request
+	 */
+	private static int encodedSize(PutMessagesDetailsEntry entry) {
+
+		int keyLength = entry.getKey() == null ? 0 : entry.getKey().length;
+		return 4 * ((keyLength + 2) / 3) + 4 * ((entry.getValue().length + 2) / 3);
+	}
 }
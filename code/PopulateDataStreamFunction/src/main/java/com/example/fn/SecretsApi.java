@@ -0,0 +1,16 @@
+// Copyright (c)  2022,  Oracle and/or its affiliates.
+// Licensed under the Universal Permissive License v 1.0 as shown at https://oss.oracle.com/licenses/upl.
+
+//The Secrets call made by the Functions, to read an auth token stored in the Vault.
+
+package com.example.fn;
+
+import com.oracle.bmc.secrets.requests.GetSecretBundleByNameRequest;
+import com.oracle.bmc.secrets.responses.GetSecretBundleByNameResponse;
+
+@FunctionalInterface
+interface SecretsApi {
+
+	GetSecretBundleByNameResponse getSecretBundleByName(GetSecretBundleByNameRequest request);
+
+}
@@ -0,0 +1,62 @@
+// Copyright (c)  2022,  Oracle and/or its affiliates.
+// Licensed under the Universal Permissive License v 1.0 as shown at https://oss.oracle.com/licenses/upl.
+
+//Loads the classes a Function needs for its first invocation, without calling any OCI service.
+//It is run in the cds stage of Dockerfile.appcds to record the class list of the AppCDS archive.
+
+package com.example.fn;
+
+import java.net.http.HttpClient;
+
+import com.oracle.bmc.secrets.SecretsClient;
+import com.oracle.bmc.secrets.requests.GetSecretBundleByNameRequest;
+import com.oracle.bmc.streaming.StreamAdminClient;
+import com.oracle.bmc.streaming.StreamClient;
+import com.oracle.bmc.streaming.requests.GetMessagesRequest;
+import com.oracle.bmc.streaming.requests.ListStreamsRequest;
+import com.oracle.bmc.streaming.requests.PutMessagesRequest;
+import com.oracle.bmc.vault.VaultsClient;
+import com.oracle.bmc.vault.requests.ListSecretsRequest;
+
+public final class StartupTraining {
+
+	private static final String SAMPLE_MESSAGE = "{\"vaultSecretName\":\"sample\","
+			+ "\"targetRestApi\":\"https://localhost/sample\",\"targetRestApiOperation\":\"PUT\","
+			+ "\"targetRestApiPayload\":{\"id\":1},"
+			+ "\"targetRestApiHeaders\":[{\"key\":\"Content-Type\",\"value\":\"application/json\"}]}";
+
+	private StartupTraining() {
+	}
+
+	/**
+	 * @param args
+	 * @throws Exception
+	 *
+	 *                   The first argument is the name of the Function class to
+	 *                   load.
+	 */
+	public static void main(String[] args) throws Exception {
+
+		DataSyncMessage message = DataSyncMessage.read(SAMPLE_MESSAGE);
+		message.validate();
+
+		HttpClient.newBuilder().build();
+
+		// the client builders and requests load most of the SDK, no call is made
+		StreamAdminClient.builder();
+		StreamClient.builder();
+		SecretsClient.builder();
+		VaultsClient.builder();
+		ListStreamsRequest.builder().build();
+		GetMessagesRequest.builder().build();
+		PutMessagesRequest.builder().build();
+		GetSecretBundleByNameRequest.builder().build();
+		ListSecretsRequest.builder().build();
+
+		if (args.length > 0) {
+			Class.forName(args[0]);
+		}
+
+	}
+
+}
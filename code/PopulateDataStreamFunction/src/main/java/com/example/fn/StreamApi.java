@@ -0,0 +1,76 @@
+// Copyright (c)  2022,  Oracle and/or its affiliates.
+// Licensed under the Universal Permissive License v 1.0 as shown at https://oss.oracle.com/licenses/upl.
+
+//The Streaming message calls made by the Functions. OciClients returns them backed by a StreamClient,
+//a local run can back them with an in-memory stream instead. The group cursor calls let consumer groups
+//keep the committed offsets of a stream.
+
+package com.example.fn;
+
+import com.oracle.bmc.streaming.StreamClient;
+import com.oracle.bmc.streaming.requests.ConsumerCommitRequest;
+import com.oracle.bmc.streaming.requests.CreateCursorRequest;
+import com.oracle.bmc.streaming.requests.CreateGroupCursorRequest;
+import com.oracle.bmc.streaming.requests.GetMessagesRequest;
+import com.oracle.bmc.streaming.requests.PutMessagesRequest;
+import com.oracle.bmc.streaming.responses.ConsumerCommitResponse;
+import com.oracle.bmc.streaming.responses.CreateCursorResponse;
+import com.oracle.bmc.streaming.responses.CreateGroupCursorResponse;
+import com.oracle.bmc.streaming.responses.GetMessagesResponse;
+import com.oracle.bmc.streaming.responses.PutMessagesResponse;
+
+interface StreamApi {
+
+	CreateCursorResponse createCursor(CreateCursorRequest request);
+
+	GetMessagesResponse getMessages(GetMessagesRequest request);
+
+	PutMessagesResponse putMessages(PutMessagesRequest request);
+
+	CreateGroupCursorResponse createGroupCursor(CreateGroupCursorRequest request);
+
+	ConsumerCommitResponse consumerCommit(ConsumerCommitRequest request);
+
+	void close();
+
+	/**
+	 * @param streamClient
+	 * @return StreamApi Returns the calls of the StreamClient.
+	 */
+	static StreamApi of(StreamClient streamClient) {
+
+		return new StreamApi() {
+
+			@Override
+			public CreateCursorResponse createCursor(CreateCursorRequest request) {
+				return streamClient.createCursor(request);
+			}
+
+			@Override
+			public GetMessagesResponse getMessages(GetMessagesRequest request) {
+				return streamClient.getMessages(request);
+			}
+
+			@Override
+			public PutMessagesResponse putMessages(PutMessagesRequest request) {
+				return streamClient.putMessages(request);
+			}
+
+			@Override
+			public CreateGroupCursorResponse createGroupCursor(CreateGroupCursorRequest request) {
+				return streamClient.createGroupCursor(request);
+			}
+
+			@Override
+			public ConsumerCommitResponse consumerCommit(ConsumerCommitRequest request) {
+				return streamClient.consumerCommit(request);
+			}
+
+			@Override
+			public void close() {
+				streamClient.close();
+			}
+		};
+	}
+
+}
@@ -0,0 +1,166 @@
+// Copyright (c)  2022,  Oracle and/or its affiliates.
+// Licensed under the Universal Permissive License v 1.0 as shown at https://oss.oracle.com/licenses/upl.
+
+//Caches one StreamClient per stream OCID for the lifetime of the Function container.
+//The client is bound to the messages endpoint of the stream. Streams validated as active 
+//are not looked up again until the validation expires or a call to the stream fails.
+
+package com.example.fn;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+import com.oracle.bmc.streaming.model.Stream;
+import com.oracle.bmc.streaming.model.Stream.LifecycleState;
+import com.oracle.bmc.streaming.model.StreamSummary;
+import com.oracle.bmc.streaming.requests.GetStreamRequest;
+import com.oracle.bmc.streaming.requests.ListStreamsRequest;
+
+final class StreamClientCache {
+
+	private static final long VALIDATION_TTL_NANOS = TimeUnit.SECONDS
+			.toNanos(FunctionConfig.intValue("stream_validation_ttl_seconds", 600));
+	// the longest Function timeout, after which no invocation uses a dropped client
+	private static final long RETIRED_CLIENT_CLOSE_DELAY_SECONDS = 300;
+	private static final ConcurrentMap<String, CachedStream> STREAMS = new ConcurrentHashMap<>();
+
+	private StreamClientCache() {
+	}
+
+	/**
+	 * @param streamOCID
+	 * @param streamAdminClient
+	 * @return StreamApi
+	 * 
+	 *         This method returns the cached StreamClient of the stream, creating
+	 *         it on first use.
+	 */
+	static StreamApi get(String streamOCID, StreamAdminApi streamAdminClient) {
+
+		return getCachedStream(streamOCID, streamAdminClient).streamClient;
+	}
+
+	/**
+	 * @param streamOCID
+	 * @param streamAdminClient
+	 * @return int Returns the no. of partitions of the stream.
+	 */
+	static int getPartitionCount(String streamOCID, StreamAdminApi streamAdminClient) {
+
+		return getCachedStream(streamOCID, streamAdminClient).partitions;
+	}
+
+	/**
+	 * @param streamOCID
+	 * @param compartmentOCID
+	 * @param streamAdminClient
+	 * @return boolean Returns true if the stream is active.
+	 * 
+	 *         This method checks if a stream exists and is active. A stream found
+	 *         active is not checked again until the validation expires, a stream
+	 *         that is not found is checked again on every call.
+	 */
+	static boolean isActive(String streamOCID, String compartmentOCID, StreamAdminApi streamAdminClient) {
+
+		CachedStream cachedStream = STREAMS.get(streamOCID);
+
+		if (cachedStream != null && cachedStream.isValid()) {
+			return true;
+		}
+
+		// validated within compute, so that a client created for the stream at the
+		// same time is neither replaced nor lost
+		CachedStream validated = STREAMS.compute(streamOCID, (ocid, current) -> {
+			if (current != null && current.isValid()) {
+				return current;
+			}
+
+			ListStreamsRequest listRequest = ListStreamsRequest.builder().compartmentId(compartmentOCID).id(ocid)
+					.lifecycleState(LifecycleState.Active).build();
+
+			List<StreamSummary> streams = streamAdminClient.listStreams(listRequest).getItems();
+
+			if (streams.isEmpty()) {
+				if (current != null) {
+					retire(current.streamClient);
+				}
+				return null;
+			}
+
+			// keep the client already built for the stream, else use the messages
+			// endpoint returned by the list call
+			StreamSummary summary = streams.get(0);
+			StreamApi streamClient = current != null ? current.streamClient
+					: OciClients.streamClient(summary.getMessagesEndpoint());
+
+			return new CachedStream(streamClient, summary.getPartitions(), System.nanoTime() + VALIDATION_TTL_NANOS);
+		});
+
+		return validated != null;
+
+	}
+
+	/**
+	 * @param streamOCID
+	 * 
+	 *                   This method drops the cached client of a stream, so that
+	 *                   the stream is looked up and validated again on next use.
+	 *                   The client is closed only once the invocations that may
+	 *                   still use it have ended.
+	 */
+	static void invalidate(String streamOCID) {
+
+		CachedStream cachedStream = STREAMS.remove(streamOCID);
+		if (cachedStream != null) {
+			retire(cachedStream.streamClient);
+		}
+	}
+
+	private static void retire(StreamApi streamClient) {
+
+		CompletableFuture.runAsync(streamClient::close,
+				CompletableFuture.delayedExecutor(RETIRED_CLIENT_CLOSE_DELAY_SECONDS, TimeUnit.SECONDS));
+	}
+
+	private static CachedStream getCachedStream(String streamOCID, StreamAdminApi streamAdminClient) {
+
+		return STREAMS.computeIfAbsent(streamOCID, ocid -> {
+			Stream stream = getStream(ocid, streamAdminClient);
+			return new CachedStream(OciClients.streamClient(stream.getMessagesEndpoint()), stream.getPartitions(), 0);
+		});
+	}
+
+	/**
+	 * @param streamOCID
+	 * @param streamAdminClient
+	 * @return Stream
+	 * 
+	 *         This method obtains the Stream object from the stream OCID.
+	 */
+	private static Stream getStream(String streamOCID, StreamAdminApi streamAdminClient) {
+
+		return streamAdminClient.getStream(GetStreamRequest.builder().streamId(streamOCID).build()).getStream();
+	}
+
+	private static final class CachedStream {
+
+		private final StreamApi streamClient;
+		private final int partitions;
+		// validation time limit, on the System.nanoTime() scale
+		private final long validUntil;
+
+		CachedStream(StreamApi streamClient, Integer partitions, long validUntil) {
+			this.streamClient = streamClient;
+			this.partitions = partitions != null ? partitions : 1;
+			this.validUntil = validUntil;
+		}
+
+		boolean isValid() {
+			return System.nanoTime() - validUntil < 0;
+		}
+	}
+
+}
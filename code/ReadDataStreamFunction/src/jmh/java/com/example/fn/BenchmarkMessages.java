@@ -0,0 +1,69 @@
+// Copyright (c)  2022,  Oracle and/or its affiliates.
+// Licensed under the Universal Permissive License v 1.0 as shown at https://oss.oracle.com/licenses/upl.
+
+//Builds the stream messages and Service Connector batches used by the benchmarks.
+
+package com.example.fn;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.util.Base64;
+
+final class BenchmarkMessages {
+
+	static final String AUTH_TOKEN = "Bearer 3f6c1a0e-8d1b-4c55-9a3e-5b7f2e8d4c11";
+
+	private BenchmarkMessages() {
+	}
+
+	/**
+	 * @param headerCount
+	 * @param itemCount
+	 * @return byte[] Returns a valid PUT message, as UTF-8 JSON, with the given
+	 *         no. of targetRestApiHeaders and payload items.
+	 */
+	static byte[] message(int headerCount, int itemCount) {
+
+		StringBuilder message = new StringBuilder(256 + 64 * (headerCount + itemCount));
+		message.append("{\"vaultSecretName\":\"target-token\",")
+				.append("\"targetRestApi\":\"https://target.example.com/api/orders/1001\",")
+				.append("\"targetRestApiOperation\":\"PUT\",")
+				.append("\"targetRestApiPayload\":{\"orderId\":1001,\"status\":\"SHIPPED\",\"items\":[");
+
+		for (int i = 0; i < itemCount; i++) {
+			message.append(i == 0 ? "" : ",").append("{\"sku\":\"SKU-").append(10000 + i)
+					.append("\",\"quantity\":").append(1 + i % 5).append(",\"price\":").append(9.99 + i).append('}');
+		}
+		message.append("]},\"targetRestApiHeaders\":[");
+
+		for (int i = 0; i < headerCount; i++) {
+			message.append(i == 0 ? "" : ",").append("{\"key\":\"X-Header-").append(i).append("\",\"value\":\"value-")
+					.append(i).append("\"}");
+		}
+		message.append("]}");
+
+		return message.toString().getBytes(UTF_8);
+	}
+
+	/**
+	 * @param batchSize
+	 * @param message
+	 * @return byte[] Returns the JSON array of stream messages the Service
+	 *         Connector sends for batchSize copies of the message.
+	 */
+	static byte[] connectorBatch(int batchSize, byte[] message) {
+
+		String value = Base64.getEncoder().encodeToString(message);
+		StringBuilder batch = new StringBuilder(batchSize * (value.length() + 160) + 2).append('[');
+
+		for (int i = 0; i < batchSize; i++) {
+			batch.append(i == 0 ? "" : ",").append("{\"stream\":\"DataSyncStream\",\"partition\":\"0\",\"key\":\"")
+					.append(Base64.getEncoder().encodeToString(("order-" + i % 16).getBytes(UTF_8)))
+					.append("\",\"value\":\"").append(value).append("\",\"offset\":").append(i)
+					.append(",\"timestamp\":1665000000000}");
+		}
+
+		return batch.append(']').toString().getBytes(UTF_8);
+	}
+
+}
@@ -0,0 +1,63 @@
+// Copyright (c)  2022,  Oracle and/or its affiliates.
+// Licensed under the Universal Permissive License v 1.0 as shown at https://oss.oracle.com/licenses/upl.
+
+//Measures decoding a Service Connector batch into its stream keys and values, and parsing every message of it,
+//for several batch sizes. The score is in batches per second.
+
+package com.example.fn;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ConnectorBatchBenchmark {
+
+	@Param({ "1", "100", "1000" })
+	public int batchSize;
+
+	private byte[] batch;
+
+	@Setup
+	public void setup() {
+		batch = BenchmarkMessages.connectorBatch(batchSize, BenchmarkMessages.message(2, 20));
+	}
+
+	@Benchmark
+	public void decode(Blackhole blackhole) throws IOException {
+		ConnectorBatchReader.read(new ByteArrayInputStream(batch), (streamKey, streamMessage, streamPosition) -> {
+			blackhole.consume(streamKey);
+			blackhole.consume(streamMessage);
+		});
+	}
+
+	@Benchmark
+	public void decodeAndParse(Blackhole blackhole) throws IOException {
+		ConnectorBatchReader.read(new ByteArrayInputStream(batch), (streamKey, streamMessage, streamPosition) -> {
+			try {
+				blackhole.consume(DataSyncMessage.read(streamMessage).validate());
+			} catch (IOException e) {
+				throw new IllegalStateException(e);
+			}
+		});
+	}
+
+}
@@ -0,0 +1,60 @@
+// Copyright (c)  2022,  Oracle and/or its affiliates.
+// Licensed under the Universal Permissive License v 1.0 as shown at https://oss.oracle.com/licenses/upl.
+
+//Measures building the PutMessages entry of a failed message and sizing it for the error stream request.
+
+package com.example.fn;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.oracle.bmc.streaming.model.PutMessagesDetailsEntry;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ErrorStreamEntryBenchmark {
+
+	@Param({ "1", "20", "200" })
+	public int payloadItems;
+
+	private byte[] streamMessage;
+	private String streamText;
+
+	@Setup
+	public void setup() {
+		streamMessage = BenchmarkMessages.message(2, payloadItems);
+		streamText = new String(streamMessage, UTF_8);
+	}
+
+	// as ReadDataStreamFunction adds the decoded bytes
+	@Benchmark
+	public int entryFromBytes() {
+		PutMessagesDetailsEntry entry = ErrorStreamPublisher.entryOf("order-1001", streamMessage);
+		return ErrorStreamPublisher.encodedSize(entry);
+	}
+
+	// as RetryFunction adds the message text
+	@Benchmark
+	public int entryFromText() {
+		PutMessagesDetailsEntry entry = ErrorStreamPublisher.entryOf("order-1001", streamText.getBytes(UTF_8));
+		return ErrorStreamPublisher.encodedSize(entry);
+	}
+
+}
@@ -0,0 +1,63 @@
+// Copyright (c)  2022,  Oracle and/or its affiliates.
+// Licensed under the Universal Permissive License v 1.0 as shown at https://oss.oracle.com/licenses/upl.
+
+//Measures reading a stream message into a DataSyncMessage and validating it, for small and large payloads.
+
+package com.example.fn;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MessageParsingBenchmark {
+
+	// no. of payload items, the headers stay at 2
+	@Param({ "1", "20", "200" })
+	public int payloadItems;
+
+	private byte[] validMessage;
+	private byte[] invalidMessage;
+
+	@Setup
+	public void setup() {
+		validMessage = BenchmarkMessages.message(2, payloadItems);
+		invalidMessage = new String(validMessage, UTF_8).replace("\"PUT\"", "\"PATCH\"").getBytes(UTF_8);
+	}
+
+	@Benchmark
+	public String parseAndValidate() throws IOException {
+		DataSyncMessage message = DataSyncMessage.read(validMessage);
+		return message.validate();
+	}
+
+	@Benchmark
+	public String parseAndValidateInvalid() throws IOException {
+		DataSyncMessage message = DataSyncMessage.read(invalidMessage);
+		return message.validate();
+	}
+
+	@Benchmark
+	public String parseAndSerializePayload() throws IOException {
+		return DataSyncMessage.read(validMessage).getTargetRestApiPayload();
+	}
+
+}
@@ -0,0 +1,54 @@
+// Copyright (c)  2022,  Oracle and/or its affiliates.
+// Licensed under the Universal Permissive License v 1.0 as shown at https://oss.oracle.com/licenses/upl.
+
+//Measures building the target request of a parsed message: the headers and the auth token, and the body publisher.
+
+package com.example.fn;
+
+import java.io.IOException;
+import java.net.http.HttpRequest;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TargetRequestBenchmark {
+
+	// no. of targetRestApiHeaders, the Authorization header comes on top
+	@Param({ "0", "4", "16" })
+	public int headerCount;
+
+	private DataSyncMessage message;
+
+	@Setup
+	public void setup() throws IOException {
+		message = DataSyncMessage.read(BenchmarkMessages.message(headerCount, 20));
+	}
+
+	@Benchmark
+	public HttpRequest createRequest() {
+		return TargetRequests.create(message, vaultSecretName -> BenchmarkMessages.AUTH_TOKEN);
+	}
+
+	@Benchmark
+	public HttpRequest createRequestWithDeadline() {
+		HttpRequest request = TargetRequests.create(message, vaultSecretName -> BenchmarkMessages.AUTH_TOKEN);
+		return TargetTimeouts.withDeadline(request, InvocationDeadline.after(30_000));
+	}
+
+}
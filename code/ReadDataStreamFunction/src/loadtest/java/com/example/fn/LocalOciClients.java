@@ -0,0 +1,49 @@
+// Copyright (c)  2022,  Oracle and/or its affiliates.
+// Licensed under the Universal Permissive License v 1.0 as shown at https://oss.oracle.com/licenses/upl.
+
+//Serves the client calls of the Functions from the local Streaming and Vault stand-ins.
+
+package com.example.fn;
+
+final class LocalOciClients implements OciClients.Factory {
+
+	private final LocalStreaming streaming;
+	private final LocalVault vault;
+
+	private LocalOciClients(LocalStreaming streaming, LocalVault vault) {
+		this.streaming = streaming;
+		this.vault = vault;
+	}
+
+	/**
+	 * @param streaming
+	 * @param vault
+	 *
+	 *                  This method makes the Functions of this JVM call the
+	 *                  stand-ins instead of OCI.
+	 */
+	static void install(LocalStreaming streaming, LocalVault vault) {
+		OciClients.use(new LocalOciClients(streaming, vault));
+	}
+
+	@Override
+	public StreamAdminApi streamAdminClient() {
+		return streaming;
+	}
+
+	@Override
+	public StreamApi streamClient(String messagesEndpoint) {
+		return streaming.streamClient();
+	}
+
+	@Override
+	public SecretsApi secretsClient() {
+		return vault;
+	}
+
+	@Override
+	public VaultsApi vaultsClient() {
+		return vault;
+	}
+
+}
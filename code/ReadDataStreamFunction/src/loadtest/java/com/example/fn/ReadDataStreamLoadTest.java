@@ -0,0 +1,131 @@
+// Copyright (c)  2022,  Oracle and/or its affiliates.
+// Licensed under the Universal Permissive License v 1.0 as shown at https://oss.oracle.com/licenses/upl.
+
+//Load test of ReadDataStreamFunction without OCI. Every invocation gets a Service Connector batch of new
+//messages for the local target, the error streams and the auth token are held by the local stand-ins.
+//With duplicateRate set, that share of the messages is a message of the previous batch delivered again.
+//The arguments are key=value pairs, see the Load tests section of the README.
+
+package com.example.fn;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.util.Base64;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+public final class ReadDataStreamLoadTest {
+
+	private static final String[] ERROR_STREAM_VARIABLES = { "unrecoverable_error_stream_ocid",
+			"serviceUnavailable_error_stream_ocid", "internalserver_error_stream_ocid", "default_error_stream_ocid" };
+	private static final String VAULT_SECRET_NAME = "local-target-token";
+
+	private ReadDataStreamLoadTest() {
+	}
+
+	public static void main(String[] args) throws Exception {
+
+		LoadDriver.Settings settings = new LoadDriver.Settings(args);
+		LoadDriver.configureLogging(settings);
+
+		int invocations = settings.intValue("invocations", 200);
+		int warmupInvocations = settings.intValue("warmupInvocations", 20);
+		int concurrency = settings.intValue("concurrency", 4);
+		int batchSize = settings.intValue("batchSize", 100);
+		int keys = settings.intValue("keys", 16);
+		double duplicateRate = settings.doubleValue("duplicateRate", 0);
+
+		LocalStreaming streaming = new LocalStreaming(FaultInjection.of(settings, "streaming"));
+		LocalVault vault = new LocalVault(FaultInjection.of(settings, "vault"));
+		for (String variable : ERROR_STREAM_VARIABLES) {
+			streaming.createStream(requiredVariable(variable), 1);
+		}
+		vault.putSecret(VAULT_SECRET_NAME, "Bearer local-token");
+		LocalOciClients.install(streaming, vault);
+
+		try (LocalTarget target = new LocalTarget(settings)) {
+
+			ReadDataStreamFunction function = new ReadDataStreamFunction();
+			AtomicLong sequence = new AtomicLong();
+			LongAdder duplicates = new LongAdder();
+
+			LoadDriver.Invocation invocation = caller -> {
+				LocalInvocation call = new LocalInvocation(Map.of(), connectorBatch(target,
+						sequence.getAndAdd(batchSize), batchSize, keys, duplicateRate, duplicates));
+				function.handleRequest(call.inputEvent(), call.gatewayContext());
+
+				if (call.getStatusCode() != 200) {
+					throw new IllegalStateException("Function returned status " + call.getStatusCode());
+				}
+				return batchSize;
+			};
+
+			LoadDriver.run(warmupInvocations, concurrency, invocation);
+			duplicates.reset();
+			LoadDriver.Report report = LoadDriver.run(invocations, concurrency, invocation);
+
+			System.out.println(report.format("ReadDataStreamFunction"));
+			System.out.println("  target responses by status: " + target.responseCounts());
+			System.out.println("  error stream messages: " + streaming.messageCounts());
+			if (duplicateRate > 0) {
+				System.out.println("  duplicate messages in the batches: " + duplicates.sum());
+			}
+		}
+
+	}
+
+	/**
+	 * @param target
+	 * @param firstMessage
+	 * @param batchSize
+	 * @param keys
+	 * @param duplicateRate
+	 * @param duplicates
+	 * @return byte[] Returns a batch as the Service Connector sends it, with
+	 *         messages numbered from firstMessage on keys distinct stream keys.
+	 *         A share duplicateRate of them repeats the message of the previous
+	 *         batch at the same position, with its offset as in a redelivery,
+	 *         these are counted in duplicates. Which messages repeat depends on
+	 *         their no. only, so a repeated message was itself sent.
+	 */
+	private static byte[] connectorBatch(LocalTarget target, long firstMessage, int batchSize, int keys,
+			double duplicateRate, LongAdder duplicates) {
+
+		StringBuilder batch = new StringBuilder("[");
+
+		for (long i = firstMessage; i < firstMessage + batchSize; i++) {
+			long n = i;
+			if (repeats(i, batchSize, duplicateRate) && !repeats(i - batchSize, batchSize, duplicateRate)) {
+				n = i - batchSize;
+				duplicates.increment();
+			}
+			String message = "{\"messageId\":\"" + n + "\",\"vaultSecretName\":\"" + VAULT_SECRET_NAME
+					+ "\",\"targetRestApi\":\"" + target.uri("/orders/" + n) + "\",\"targetRestApiOperation\":\"PUT\","
+					+ "\"targetRestApiPayload\":{\"orderId\":" + n + ",\"status\":\"SHIPPED\"},"
+					+ "\"targetRestApiHeaders\":[{\"key\":\"Content-Type\",\"value\":\"application/json\"}]}";
+
+			batch.append(i == firstMessage ? "" : ",").append("{\"stream\":\"DataSyncStream\",\"partition\":\"0\",")
+					.append("\"key\":\"order-").append(n % Math.max(1, keys)).append("\",\"value\":\"")
+					.append(Base64.getEncoder().encodeToString(message.getBytes(UTF_8))).append("\",\"offset\":")
+					.append(n).append('}');
+		}
+
+		return batch.append(']').toString().getBytes(UTF_8);
+	}
+
+	private static boolean repeats(long message, int batchSize, double duplicateRate) {
+		return message >= batchSize && new SplittableRandom(message).nextDouble() < duplicateRate;
+	}
+
+	private static String requiredVariable(String name) {
+
+		String value = System.getenv(name);
+		if (value == null || value.isBlank()) {
+			throw new IllegalStateException("Set the environment variable " + name + ".");
+		}
+		return value;
+	}
+
+}
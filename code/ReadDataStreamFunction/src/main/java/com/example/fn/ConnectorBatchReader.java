@@ -0,0 +1,93 @@
+// Copyright (c)  2022,  Oracle and/or its affiliates.
+// Licensed under the Universal Permissive License v 1.0 as shown at https://oss.oracle.com/licenses/upl.
+
+//Reads the array of stream messages sent by the Service Connector, token by token.
+//The value of each message is base64 decoded while it is read and handed on at once,
+//so the batch is never held in memory as a whole.
+
+package com.example.fn;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+final class ConnectorBatchReader {
+
+	private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+	private ConnectorBatchReader() {
+	}
+
+	/**
+	 * @param body
+	 * @param messageHandler
+	 * @throws IOException
+	 *
+	 *                     This method reads the batch and passes the stream key,
+	 *                     the decoded value and the stream position of every
+	 *                     message to the handler, in the order of the batch.
+	 */
+	static void read(InputStream body, MessageHandler messageHandler) throws IOException {
+
+		try (JsonParser parser = JSON_FACTORY.createParser(body)) {
+
+			if (parser.nextToken() != JsonToken.START_ARRAY) {
+				throw new JsonParseException(parser, "Expected an array of stream messages.");
+			}
+
+			while (parser.nextToken() == JsonToken.START_OBJECT) {
+				// Get the stream key and the decoded value
+
+				String streamKey = "";
+				byte[] streamMessage = null;
+				String partition = null;
+				String offset = null;
+
+				while (parser.nextToken() == JsonToken.FIELD_NAME) {
+					String fieldName = parser.getCurrentName();
+					JsonToken valueToken = parser.nextToken();
+
+					if ("key".equals(fieldName) && valueToken != JsonToken.VALUE_NULL) {
+						streamKey = parser.getValueAsString("");
+					} else if ("value".equals(fieldName) && valueToken == JsonToken.VALUE_STRING) {
+						streamMessage = parser.getBinaryValue();
+					} else if ("partition".equals(fieldName) && valueToken.isScalarValue()) {
+						partition = parser.getValueAsString();
+					} else if ("offset".equals(fieldName) && valueToken.isScalarValue()) {
+						offset = parser.getValueAsString();
+					} else {
+						parser.skipChildren();
+					}
+				}
+
+				if (streamMessage == null) {
+					throw new JsonParseException(parser, "Stream message without a value.");
+				}
+
+				messageHandler.accept(streamKey, streamMessage,
+						partition != null && offset != null ? partition + "/" + offset : null);
+			}
+		}
+
+	}
+
+	// Receives the messages of a batch
+	interface MessageHandler {
+
+		/**
+		 * @param streamKey
+		 * @param streamMessage
+		 * @param streamPosition
+		 *
+		 *                       The stream position is the partition and offset of
+		 *                       the message, or null if the batch does not have
+		 *                       them.
+		 */
+		void accept(String streamKey, byte[] streamMessage, String streamPosition);
+	}
+
+}
@@ -0,0 +1,205 @@
+// Copyright (c)  2022,  Oracle and/or its affiliates.
+// Licensed under the Universal Permissive License v 1.0 as shown at https://oss.oracle.com/licenses/upl.
+
+//The streamMessage section of the DataSync payload. It is the value of the messages in the 
+//DataSyncStream and in the error streams. Messages are read with a single ObjectReader 
+//per Function container.
+
+package com.example.fn;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.module.blackbird.BlackbirdModule;
+
+@JsonIgnoreProperties(ignoreUnknown = true)
+public final class DataSyncMessage {
+
+	private static final ObjectReader READER = createReader();
+
+	/**
+	 * The target application REST API operations handled by the Functions
+	 */
+	public enum Operation {
+		PUT, POST, DELETE;
+
+		/**
+		 * @param name
+		 * @return Operation Returns the operation, or null if it is not handled.
+		 */
+		static Operation fromName(String name) {
+			if (name != null) {
+				for (Operation operation : values()) {
+					if (operation.name().equals(name)) {
+						return operation;
+					}
+				}
+			}
+			return null;
+		}
+	}
+
+	/**
+	 * A key, value pair of the targetRestApiHeaders section
+	 */
+	@JsonIgnoreProperties(ignoreUnknown = true)
+	public static final class Header {
+
+		private final String key;
+		private final String value;
+
+		@JsonCreator
+		public Header(@JsonProperty("key") String key, @JsonProperty("value") String value) {
+			this.key = key;
+			this.value = value;
+		}
+
+		public String getKey() {
+			return key;
+		}
+
+		public String getValue() {
+			return value;
+		}
+	}
+
+	private final String messageId;
+	private final String vaultSecretName;
+	private final String targetRestApi;
+	private final String targetRestApiOperationName;
+	private final Operation targetRestApiOperation;
+	private final JsonNode targetRestApiPayload;
+	private final List<Header> targetRestApiHeaders;
+
+	@JsonCreator
+	public DataSyncMessage(@JsonProperty("messageId") String messageId,
+			@JsonProperty("vaultSecretName") String vaultSecretName,
+			@JsonProperty("targetRestApi") String targetRestApi,
+			@JsonProperty("targetRestApiOperation") String targetRestApiOperation,
+			@JsonProperty("targetRestApiPayload") JsonNode targetRestApiPayload,
+			@JsonProperty("targetRestApiHeaders") List<Header> targetRestApiHeaders) {
+
+		this.messageId = messageId == null || messageId.isEmpty() ? null : messageId;
+		this.vaultSecretName = vaultSecretName == null ? "" : vaultSecretName;
+		this.targetRestApi = targetRestApi;
+		this.targetRestApiOperationName = targetRestApiOperation;
+		this.targetRestApiOperation = Operation.fromName(targetRestApiOperation);
+		this.targetRestApiPayload = targetRestApiPayload;
+		this.targetRestApiHeaders = targetRestApiHeaders == null ? Collections.emptyList()
+				: Collections.unmodifiableList(targetRestApiHeaders);
+	}
+
+	/**
+	 * @param streamMessage
+	 * @return DataSyncMessage
+	 * @throws IOException
+	 * 
+	 *                     This method reads a message from its UTF-8 JSON bytes.
+	 */
+	public static DataSyncMessage read(byte[] streamMessage) throws IOException {
+		return READER.readValue(streamMessage);
+	}
+
+	/**
+	 * @param streamMessage
+	 * @return DataSyncMessage
+	 * @throws IOException
+	 * 
+	 *                     This method reads a message from its JSON text.
+	 */
+	public static DataSyncMessage read(String streamMessage) throws IOException {
+		return READER.readValue(streamMessage);
+	}
+
+	/**
+	 * @return ObjectReader
+	 * 
+	 *         This method creates the reader of the messages. The Blackbird module
+	 *         replaces reflective access with generated lambdas. A native image
+	 *         cannot define classes at run time, so it uses reflection instead.
+	 */
+	private static ObjectReader createReader() {
+
+		ObjectMapper objectMapper = new ObjectMapper();
+		if (System.getProperty("org.graalvm.nativeimage.imagecode") == null) {
+			objectMapper.registerModule(new BlackbirdModule());
+		}
+		return objectMapper.readerFor(DataSyncMessage.class);
+	}
+
+	/**
+	 * @param streamMessageNode
+	 * @return DataSyncMessage
+	 * @throws JsonProcessingException
+	 * 
+	 *                                 This method reads a message from an already
+	 *                                 parsed JSON tree.
+	 */
+	public static DataSyncMessage read(JsonNode streamMessageNode) throws JsonProcessingException {
+		return READER.treeToValue(streamMessageNode, DataSyncMessage.class);
+	}
+
+	/**
+	 * @return String Returns the reasons the message cannot be processed, or null
+	 *         if it is valid.
+	 */
+	public String validate() {
+
+		StringBuilder failureMessage = new StringBuilder();
+
+		if (targetRestApi == null) {
+			failureMessage.append("Message could not be processed as targetRestApi node is not found in payload.");
+		}
+		if (targetRestApiOperationName == null) {
+			failureMessage
+					.append(" Message could not be processed as targetRestApiOperation node is not found in payload.");
+		} else if (targetRestApiOperation == null) {
+			failureMessage.append(
+					" Message could not be processed as targetRestApiOperation node doesnt contain PUT,POST or DELETE.");
+		}
+
+		return failureMessage.length() == 0 ? null : failureMessage.toString().trim();
+
+	}
+
+	/**
+	 * @return String Returns the identifier given to the message by the source
+	 *         application, or null if it has none.
+	 */
+	public String getMessageId() {
+		return messageId;
+	}
+
+	public String getVaultSecretName() {
+		return vaultSecretName;
+	}
+
+	public String getTargetRestApi() {
+		return targetRestApi;
+	}
+
+	public Operation getTargetRestApiOperation() {
+		return targetRestApiOperation;
+	}
+
+	/**
+	 * @return String Returns the payload as JSON text, or an empty string if the
+	 *         message has no payload.
+	 */
+	public String getTargetRestApiPayload() {
+		return targetRestApiPayload == null ? "" : targetRestApiPayload.toString();
+	}
+
+	public List<Header> getTargetRestApiHeaders() {
+		return targetRestApiHeaders;
+	}
+
+}
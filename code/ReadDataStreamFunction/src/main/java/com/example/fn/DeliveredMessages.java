@@ -0,0 +1,194 @@
+// Copyright (c)  2022,  Oracle and/or its affiliates.
+// Licensed under the Universal Permissive License v 1.0 as shown at https://oss.oracle.com/licenses/upl.
+
+//Remembers the messages the Function container delivered to their target application, so that a message
+//delivered again by the Service Connector is skipped instead of being sent a second time. A message is
+//known by its stream key and messageId, or by a hash of its stream key, stream position and content.
+//The keys are kept in a bounded map in least recently used order. A Store shared by the containers can
+//replace the map.
+
+package com.example.fn;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+final class DeliveredMessages {
+
+	private static final Logger LOGGER = Logger.getLogger(DeliveredMessages.class.getName());
+	// id, content or none
+	private static final String KEY_MODE = FunctionConfig.stringValue("dedup_key", "id");
+	// approximate heap taken by a key, its time and its map entry
+	private static final int ENTRY_BYTES = 256;
+	private static final int MAX_ENTRIES = FunctionConfig.intValue("dedup_max_entries", defaultMaxEntries());
+	private static final long TTL_NANOS = TimeUnit.SECONDS
+			.toNanos(FunctionConfig.intValue("dedup_ttl_seconds", 3600));
+	// length of the content hash kept as key, 128 bits of SHA-256
+	private static final int CONTENT_HASH_BYTES = 16;
+
+	private static volatile Store store = new LocalStore(MAX_ENTRIES, TTL_NANOS);
+
+	private DeliveredMessages() {
+	}
+
+	/**
+	 * @param sharedStore
+	 *
+	 *                    This method makes the container remember the delivered
+	 *                    messages in sharedStore instead of its own map.
+	 */
+	static void use(Store sharedStore) {
+		store = sharedStore;
+	}
+
+	/**
+	 * @param streamKey
+	 * @param streamPosition
+	 * @param streamMessage
+	 * @param message
+	 * @return String Returns the key of the message, or null if the message is
+	 *         not checked for duplicates. With dedup_key set to id only messages
+	 *         with a messageId are checked. With content only messages with a
+	 *         stream position are checked, as a change that repeats an earlier
+	 *         one has the same content but a position of its own.
+	 */
+	static String keyOf(String streamKey, String streamPosition, byte[] streamMessage, DataSyncMessage message) {
+
+		if ("id".equalsIgnoreCase(KEY_MODE)) {
+			return message.getMessageId() == null ? null : "id:" + streamKey + "\n" + message.getMessageId();
+		}
+		if ("content".equalsIgnoreCase(KEY_MODE)) {
+			return streamPosition == null ? null : "sha:" + contentHash(streamKey, streamPosition, streamMessage);
+		}
+		return null;
+	}
+
+	/**
+	 * @param key
+	 * @return boolean Returns true if the message of the key was delivered. A
+	 *         store that fails counts as not knowing the message, so the message
+	 *         is sent rather than lost.
+	 */
+	static boolean isDelivered(String key) {
+
+		try {
+			return store.contains(key);
+		} catch (RuntimeException e) {
+			LOGGER.log(Level.WARNING, "Lookup of a delivered message failed. {0}", e.getLocalizedMessage());
+			return false;
+		}
+	}
+
+	/**
+	 * @param key
+	 *
+	 *            This method records that the message of the key was delivered.
+	 */
+	static void markDelivered(String key) {
+
+		try {
+			store.add(key);
+		} catch (RuntimeException e) {
+			LOGGER.log(Level.WARNING, "A delivered message could not be recorded. {0}", e.getLocalizedMessage());
+		}
+	}
+
+	/**
+	 * @return int Returns the no. of keys that fit in 5% of the maximum heap, at
+	 *         most 100000.
+	 */
+	private static int defaultMaxEntries() {
+		return (int) Math.min(100000, Runtime.getRuntime().maxMemory() / 20 / ENTRY_BYTES);
+	}
+
+	private static String contentHash(String streamKey, String streamPosition, byte[] streamMessage) {
+
+		MessageDigest digest;
+		try {
+			digest = MessageDigest.getInstance("SHA-256");
+		} catch (NoSuchAlgorithmException e) {
+			// every Java runtime has SHA-256
+			throw new IllegalStateException(e);
+		}
+		digest.update(streamKey.getBytes(UTF_8));
+		digest.update((byte) 0);
+		digest.update(streamPosition.getBytes(UTF_8));
+		digest.update((byte) 0);
+		digest.update(streamMessage);
+
+		return Base64.getEncoder().withoutPadding()
+				.encodeToString(Arrays.copyOf(digest.digest(), CONTENT_HASH_BYTES));
+	}
+
+	// Keys of the delivered messages, shared by the invocations using it
+	interface Store {
+
+		/**
+		 * @param key
+		 * @return boolean Returns true if the key was added and has not expired.
+		 */
+		boolean contains(String key);
+
+		/**
+		 * @param key
+		 */
+		void add(String key);
+	}
+
+	// The store of a single container
+	static final class LocalStore implements Store {
+
+		private final long ttlNanos;
+		// time each key was added, in least recently used order
+		private final Map<String, Long> addedAt;
+
+		/**
+		 * @param maxEntries
+		 * @param ttlNanos
+		 *
+		 *                   Only the maxEntries most recent keys are kept. A message
+		 *                   whose key was evicted is not recognised and is sent
+		 *                   again, rather than a new message being skipped.
+		 */
+		LocalStore(int maxEntries, long ttlNanos) {
+			this.ttlNanos = ttlNanos;
+
+			this.addedAt = new LinkedHashMap<>(16, 0.75f, true) {
+				private static final long serialVersionUID = 1L;
+
+				@Override
+				protected boolean removeEldestEntry(Map.Entry<String, Long> eldest) {
+					return size() > maxEntries;
+				}
+			};
+		}
+
+		@Override
+		public synchronized boolean contains(String key) {
+
+			Long added = addedAt.get(key);
+
+			if (added != null) {
+				if (System.nanoTime() - added < ttlNanos) {
+					return true;
+				}
+				addedAt.remove(key);
+			}
+			return false;
+		}
+
+		@Override
+		public synchronized void add(String key) {
+			addedAt.put(key, System.nanoTime());
+		}
+	}
+
+}
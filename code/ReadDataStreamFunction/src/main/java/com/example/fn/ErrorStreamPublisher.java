@@ -0,0 +1,267 @@
+// Copyright (c)  2022,  Oracle and/or its affiliates.
+// Licensed under the Universal Permissive License v 1.0 as shown at https://oss.oracle.com/licenses/upl.
+
+//Collects the failed messages of an invocation per error stream and writes them 
+//with multi-entry PutMessages calls. Entries rejected by the service are retried.
+
+package com.example.fn;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import com.oracle.bmc.model.BmcException;
+import com.oracle.bmc.streaming.model.PutMessagesDetails;
+import com.oracle.bmc.streaming.model.PutMessagesDetailsEntry;
+import com.oracle.bmc.streaming.model.PutMessagesResultEntry;
+import com.oracle.bmc.streaming.requests.PutMessagesRequest;
+import com.oracle.bmc.streaming.responses.PutMessagesResponse;
+
+class ErrorStreamPublisher {
+
+	private static final Logger LOGGER = Logger.getLogger(ErrorStreamPublisher.class.getName());
+	// PutMessages accepts up to 1 MB of base64 encoded keys and values per request
+	private static final int MAX_BYTES_PER_REQUEST = 1024 * 1024;
+	private static final int MAX_ENTRIES_PER_REQUEST = FunctionConfig.intValue("error_stream_batch_size", 100);
+	private static final int PUT_ATTEMPTS = FunctionConfig.intValue("error_stream_put_attempts", 3);
+	private static final long RETRY_BACKOFF_MILLIS = 200;
+	// set when the blocking calls of the container run on virtual threads
+	private static final Executor PUBLISH_EXECUTOR = TaskExecutors.virtualThreads();
+
+	private final StreamAdminApi streamAdminClient;
+	private final Map<String, PendingMessages> pendingMessages = new LinkedHashMap<>();
+	private final AtomicInteger unpublishedCount = new AtomicInteger();
+
+	ErrorStreamPublisher(StreamAdminApi streamAdminClient) {
+		this.streamAdminClient = streamAdminClient;
+	}
+
+	/**
+	 * @param errorStreamOCID
+	 * @param streamKey
+	 * @param streamMessage
+	 * 
+	 *                        This method queues a failed message for the error
+	 *                        stream. The queued messages of a stream are written
+	 *                        as soon as they fill a PutMessages request.
+	 */
+	void add(String errorStreamOCID, String streamKey, String streamMessage) {
+		add(errorStreamOCID, streamKey, streamMessage.getBytes(UTF_8));
+	}
+
+	/**
+	 * @param errorStreamOCID
+	 * @param streamKey
+	 * @param streamMessage
+	 * 
+	 *                        This method queues a failed message, given as UTF-8
+	 *                        bytes, for the error stream.
+	 */
+	void add(String errorStreamOCID, String streamKey, byte[] streamMessage) {
+
+		PutMessagesDetailsEntry entry = entryOf(streamKey, streamMessage);
+		List<PutMessagesDetailsEntry> fullRequest = null;
+		FunctionMetrics.incrementRouted(errorStreamOCID);
+
+		synchronized (this) {
+			PendingMessages pending = pendingMessages.computeIfAbsent(errorStreamOCID, ocid -> new PendingMessages());
+			if (!pending.fits(entry)) {
+				fullRequest = pending.drain();
+			}
+			pending.add(entry);
+		}
+
+		if (fullRequest != null) {
+			publish(errorStreamOCID, fullRequest);
+		}
+
+	}
+
+	/**
+	 * @param streamKey
+	 * @param streamMessage
+	 * @return PutMessagesDetailsEntry Returns the PutMessages entry of a failed
+	 *         message.
+	 */
+	static PutMessagesDetailsEntry entryOf(String streamKey, byte[] streamMessage) {
+		return PutMessagesDetailsEntry.builder().key(streamKey.getBytes(UTF_8)).value(streamMessage).build();
+	}
+
+	/**
+	 * This method writes all the queued messages to their error streams.
+	 */
+	void flush() {
+
+		Map<String, List<PutMessagesDetailsEntry>> requests = new LinkedHashMap<>();
+
+		synchronized (this) {
+			pendingMessages.forEach((errorStreamOCID, pending) -> {
+				if (!pending.entries.isEmpty()) {
+					requests.put(errorStreamOCID, pending.drain());
+				}
+			});
+		}
+
+		if (PUBLISH_EXECUTOR == null || requests.size() < 2) {
+			requests.forEach(this::publish);
+			return;
+		}
+
+		// the error streams are written at the same time
+		CompletableFuture.allOf(requests.entrySet().stream()
+				.map(request -> CompletableFuture.runAsync(() -> publish(request.getKey(), request.getValue()),
+						PUBLISH_EXECUTOR))
+				.toArray(CompletableFuture<?>[]::new)).join();
+
+	}
+
+	/**
+	 * @return int Returns the no. of messages that could not be written to their
+	 *         error stream.
+	 */
+	int getUnpublishedCount() {
+		return unpublishedCount.get();
+	}
+
+	/**
+	 * @param errorStreamOCID
+	 * @param entries
+	 * 
+	 *                        This method writes the entries with a single
+	 *                        PutMessages call and retries the entries that
+	 *                        failed, with an increasing backoff.
+	 */
+	private void publish(String errorStreamOCID, List<PutMessagesDetailsEntry> entries) {
+
+		List<PutMessagesDetailsEntry> remaining = entries;
+
+		for (int attempt = 1; attempt <= PUT_ATTEMPTS && !remaining.isEmpty(); attempt++) {
+
+			if (attempt > 1 && !backoff(attempt)) {
+				break;
+			}
+			try {
+				remaining = putMessages(errorStreamOCID, remaining);
+
+			} catch (BmcException e) {
+				LOGGER.log(Level.WARNING, String.format("Put messages to stream with OCID %s failed, attempt %d. %s",
+						errorStreamOCID, attempt, e.getLocalizedMessage()));
+
+				if (!isRetriable(e)) {
+					StreamClientCache.invalidate(errorStreamOCID);
+					break;
+				}
+			}
+		}
+
+		if (!remaining.isEmpty()) {
+			unpublishedCount.addAndGet(remaining.size());
+			for (PutMessagesDetailsEntry entry : remaining) {
+				LOGGER.log(Level.SEVERE,
+						String.format("Message with key %s could not be written to stream with OCID %s. Message: %s",
+								new String(entry.getKey(), UTF_8), errorStreamOCID,
+								new String(entry.getValue(), UTF_8)));
+			}
+		}
+
+	}
+
+	/**
+	 * @param errorStreamOCID
+	 * @param entries
+	 * @return List Returns the entries which were rejected by the service.
+	 */
+	private List<PutMessagesDetailsEntry> putMessages(String errorStreamOCID, List<PutMessagesDetailsEntry> entries) {
+
+		PutMessagesRequest putRequest = PutMessagesRequest.builder().streamId(errorStreamOCID)
+				.putMessagesDetails(PutMessagesDetails.builder().messages(entries).build()).build();
+
+		long start = System.nanoTime();
+		PutMessagesResponse putResponse;
+		try {
+			putResponse = StreamClientCache.get(errorStreamOCID, streamAdminClient).putMessages(putRequest);
+		} finally {
+			FunctionMetrics.recordLatency("error_stream_put", start);
+		}
+
+		// the result entries are in the same order as the request entries
+		List<PutMessagesResultEntry> resultEntries = putResponse.getPutMessagesResult().getEntries();
+		List<PutMessagesDetailsEntry> failedEntries = new ArrayList<>();
+
+		for (int i = 0; i < resultEntries.size(); i++) {
+			PutMessagesResultEntry entry = resultEntries.get(i);
+			if (entry.getError() != null) {
+
+				LOGGER.log(Level.WARNING, String.format("Put message error  %s, in stream with OCID %s.",
+						entry.getErrorMessage(), errorStreamOCID));
+				failedEntries.add(entries.get(i));
+
+			} else {
+
+				LOGGER.log(Level.INFO,
+						String.format("Message pushed to offset %s, in partition  %s in stream with OCID %s",
+								entry.getOffset(), entry.getPartition(), errorStreamOCID));
+			}
+		}
+
+		return failedEntries;
+
+	}
+
+	private static boolean isRetriable(BmcException e) {
+		return e.isTimeout() || e.getStatusCode() == 429 || e.getStatusCode() >= 500 || e.getStatusCode() <= 0;
+	}
+
+	private static boolean backoff(int attempt) {
+		try {
+			Thread.sleep(RETRY_BACKOFF_MILLIS << (attempt - 2));
+			return true;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return false;
+		}
+	}
+
+	/**
+	 * @param entry
+	 * @return int Returns the size of the entry once base64 encoded in the request
+	 */
+	static int encodedSize(PutMessagesDetailsEntry entry) {
+
+		int keyLength = entry.getKey() == null ? 0 : entry.getKey().length;
+		return 4 * ((keyLength + 2) / 3) + 4 * ((entry.getValue().length + 2) / 3);
+	}
+
+	// The messages queued for one error stream
+	private static final class PendingMessages {
+
+		private List<PutMessagesDetailsEntry> entries = new ArrayList<>();
+		private int bytes;
+
+		boolean fits(PutMessagesDetailsEntry entry) {
+			return entries.isEmpty() || (entries.size() < MAX_ENTRIES_PER_REQUEST
+					&& bytes + encodedSize(entry) <= MAX_BYTES_PER_REQUEST);
+		}
+
+		void add(PutMessagesDetailsEntry entry) {
+			entries.add(entry);
+			bytes += encodedSize(entry);
+		}
+
+		List<PutMessagesDetailsEntry> drain() {
+			List<PutMessagesDetailsEntry> drained = entries;
+			entries = new ArrayList<>();
+			bytes = 0;
+			return drained;
+		}
+	}
+
+}
@@ -0,0 +1,92 @@
+// Copyright (c)  2022,  Oracle and/or its affiliates.
+// Licensed under the Universal Permissive License v 1.0 as shown at https://oss.oracle.com/licenses/upl.
+
+//The point in time by which the Function invocation has to return. 
+//It is read from the Fn-Deadline header of the invocation, or derived from the configured Function timeout.
+
+package com.example.fn;
+
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Optional;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import com.fnproject.fn.api.httpgateway.HTTPGatewayContext;
+
+final class InvocationDeadline {
+
+	private static final Logger LOGGER = Logger.getLogger(InvocationDeadline.class.getName());
+	private static final int FUNCTION_TIMEOUT_SECONDS = FunctionConfig.intValue("function_timeout_seconds", 30);
+	// time kept free to write the failed messages and the response
+	private static final int SAFETY_MARGIN_MILLIS = FunctionConfig.intValue("deadline_safety_margin_millis", 3000);
+
+	private final Instant deadline;
+
+	private InvocationDeadline(Instant deadline) {
+		this.deadline = deadline;
+	}
+
+	/**
+	 * @param httpGatewayContext
+	 * @return InvocationDeadline
+	 * 
+	 *         This method returns the deadline of the invocation, less the safety
+	 *         margin.
+	 */
+	static InvocationDeadline of(HTTPGatewayContext httpGatewayContext) {
+
+		Instant deadline = Instant.now().plusSeconds(FUNCTION_TIMEOUT_SECONDS);
+		Optional<String> deadlineHeader = httpGatewayContext.getInvocationContext().getRequestHeaders()
+				.get("Fn-Deadline");
+
+		if (deadlineHeader.isPresent()) {
+			try {
+				deadline = OffsetDateTime.parse(deadlineHeader.get()).toInstant();
+			} catch (DateTimeParseException e) {
+				LOGGER.log(Level.WARNING, "Invalid Fn-Deadline header {0}, using the configured timeout.",
+						deadlineHeader.get());
+			}
+		}
+
+		return new InvocationDeadline(deadline.minusMillis(SAFETY_MARGIN_MILLIS));
+	}
+
+	/**
+	 * @param millis
+	 * @return InvocationDeadline
+	 * 
+	 *         This method returns the deadline millis from now, for callers
+	 *         outside of a Function invocation.
+	 */
+	static InvocationDeadline after(long millis) {
+		return new InvocationDeadline(Instant.now().plusMillis(millis));
+	}
+
+	/**
+	 * @param maxSeconds
+	 * @return InvocationDeadline
+	 * 
+	 *         This method returns this deadline or the one maxSeconds from now,
+	 *         whichever is earlier.
+	 */
+	InvocationDeadline limitTo(long maxSeconds) {
+
+		Instant limit = Instant.now().plusSeconds(maxSeconds);
+		return limit.isBefore(deadline) ? new InvocationDeadline(limit) : this;
+	}
+
+	/**
+	 * @return long Returns the milliseconds left until the deadline, or 0 if it
+	 *         has passed.
+	 */
+	long remainingMillis() {
+		return Math.max(0, deadline.toEpochMilli() - System.currentTimeMillis());
+	}
+
+	boolean isExpired() {
+		return remainingMillis() == 0;
+	}
+
+}
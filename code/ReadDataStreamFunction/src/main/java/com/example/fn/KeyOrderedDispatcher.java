@@ -0,0 +1,139 @@
+// Copyright (c)  2022,  Oracle and/or its affiliates.
+// Licensed under the Universal Permissive License v 1.0 as shown at https://oss.oracle.com/licenses/upl.
+
+//Dispatches the messages of a Service Connector batch on a bounded set of threads.
+//Messages that share a stream key run one after the other in the order they were submitted,
+//messages with different keys run in parallel. The no. of messages submitted and not yet
+//completed is bounded, so a large batch is not held in memory at once.
+
+package com.example.fn;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Semaphore;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+class KeyOrderedDispatcher {
+
+	private static final Logger LOGGER = Logger.getLogger(KeyOrderedDispatcher.class.getName());
+
+	private final Executor executor;
+	private final Semaphore inFlightPermits;
+	// last submitted task for every stream key that still has work pending
+	private final Map<String, CompletableFuture<Void>> keyTails = new HashMap<>();
+	// tasks submitted without a stream key, they have no ordering requirement
+	private final List<CompletableFuture<Void>> unorderedTasks = new ArrayList<>();
+	private Throwable firstFailure;
+
+	/**
+	 * @param executor
+	 * @param maxInFlight
+	 *
+	 *                    The executor bounds the number of messages that are
+	 *                    dispatched at the same time, maxInFlight the number of
+	 *                    messages that are submitted and not yet completed.
+	 */
+	KeyOrderedDispatcher(Executor executor, int maxInFlight) {
+		this.executor = executor;
+		this.inFlightPermits = new Semaphore(Math.max(1, maxInFlight));
+	}
+
+	/**
+	 * @param streamKey
+	 * @param task
+	 *
+	 *                  This method schedules the task after the previously
+	 *                  submitted task with the same stream key. Messages without
+	 *                  a stream key are scheduled immediately. The call blocks
+	 *                  while the maximum no. of messages are in flight.
+	 */
+	void submit(String streamKey, Runnable task) {
+
+		inFlightPermits.acquireUninterruptibly();
+
+		Runnable releasingTask = () -> {
+			try {
+				task.run();
+			} finally {
+				inFlightPermits.release();
+			}
+		};
+
+		schedule(streamKey, releasingTask);
+
+	}
+
+	private synchronized void schedule(String streamKey, Runnable task) {
+
+		if (streamKey == null || streamKey.isEmpty()) {
+			unorderedTasks.add(CompletableFuture.runAsync(task, executor).whenComplete(this::recordFailure));
+			return;
+		}
+
+		CompletableFuture<Void> tail = keyTails.get(streamKey);
+		CompletableFuture<Void> next;
+
+		if (tail == null) {
+			next = CompletableFuture.runAsync(task, executor);
+		} else {
+			// run after the previous message of the key, whether it succeeded or not
+			next = tail.handle((result, ex) -> null).thenRunAsync(task, executor);
+		}
+
+		keyTails.put(streamKey, next);
+		next.whenComplete((result, ex) -> {
+			recordFailure(result, ex);
+			removeTail(streamKey, next);
+		});
+
+	}
+
+	/**
+	 * This method blocks until every submitted task has completed. The first
+	 * failure of a task, if any, is rethrown after all tasks have finished.
+	 */
+	void awaitCompletion() {
+
+		CompletableFuture<?>[] pending;
+
+		synchronized (this) {
+			List<CompletableFuture<Void>> tasks = new ArrayList<>(keyTails.values());
+			tasks.addAll(unorderedTasks);
+			pending = tasks.toArray(new CompletableFuture<?>[0]);
+		}
+
+		// the tail of a key completes only after all earlier tasks of that key
+		CompletableFuture.allOf(pending).handle((result, ex) -> null).join();
+
+		synchronized (this) {
+			unorderedTasks.clear();
+			if (firstFailure != null) {
+				Throwable failure = firstFailure;
+				firstFailure = null;
+				throw failure instanceof CompletionException ? (CompletionException) failure
+						: new CompletionException(failure);
+			}
+		}
+
+	}
+
+	private synchronized void removeTail(String streamKey, CompletableFuture<Void> task) {
+		keyTails.remove(streamKey, task);
+	}
+
+	private synchronized void recordFailure(Void result, Throwable ex) {
+		if (ex != null) {
+			LOGGER.log(Level.SEVERE, "Message dispatch failed with exception {0}", ex.getLocalizedMessage());
+			if (firstFailure == null) {
+				firstFailure = ex;
+			}
+		}
+	}
+
+}
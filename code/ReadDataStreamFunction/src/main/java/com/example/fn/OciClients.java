@@ -0,0 +1,121 @@
+// Copyright (c)  2022,  Oracle and/or its affiliates.
+// Licensed under the Universal Permissive License v 1.0 as shown at https://oss.oracle.com/licenses/upl.
+
+//Holds the OCI authentication provider and SDK clients for the lifetime of the Function container.
+//Each one is created on first use only, so an invocation does not pay for clients it does not need,
+//and later invocations reuse the connections of the clients. The SDK clients are thread safe.
+//A local run replaces the SDK clients with its own Factory, then no OCI service is called.
+
+package com.example.fn;
+
+import com.oracle.bmc.auth.ResourcePrincipalAuthenticationDetailsProvider;
+import com.oracle.bmc.secrets.SecretsClient;
+import com.oracle.bmc.streaming.StreamAdminClient;
+import com.oracle.bmc.streaming.StreamClient;
+import com.oracle.bmc.vault.VaultsClient;
+
+final class OciClients {
+
+	private static volatile Factory factory = new SdkFactory();
+
+	private OciClients() {
+	}
+
+	/**
+	 * @param localFactory
+	 *
+	 *                     This method makes the Functions of the container use
+	 *                     the clients of localFactory instead of the SDK clients.
+	 */
+	static void use(Factory localFactory) {
+		factory = localFactory;
+	}
+
+	/**
+	 * @return StreamAdminApi Returns the StreamAdminClient of the container.
+	 */
+	static StreamAdminApi streamAdminClient() {
+		return factory.streamAdminClient();
+	}
+
+	/**
+	 * @param messagesEndpoint
+	 * @return StreamApi Returns a new StreamClient for the messages endpoint of a
+	 *         stream.
+	 */
+	static StreamApi streamClient(String messagesEndpoint) {
+		return factory.streamClient(messagesEndpoint);
+	}
+
+	/**
+	 * @return SecretsApi Returns the SecretsClient of the container.
+	 */
+	static SecretsApi secretsClient() {
+		return factory.secretsClient();
+	}
+
+	/**
+	 * @return VaultsApi Returns the VaultsClient of the container.
+	 */
+	static VaultsApi vaultsClient() {
+		return factory.vaultsClient();
+	}
+
+	// Creates the clients of the Functions
+	interface Factory {
+
+		StreamAdminApi streamAdminClient();
+
+		StreamApi streamClient(String messagesEndpoint);
+
+		SecretsApi secretsClient();
+
+		VaultsApi vaultsClient();
+	}
+
+	// The SDK clients, authenticated with the resource principal of the Function
+	private static final class SdkFactory implements Factory {
+
+		@Override
+		public StreamAdminApi streamAdminClient() {
+			return StreamAdminClientHolder.CLIENT;
+		}
+
+		@Override
+		public StreamApi streamClient(String messagesEndpoint) {
+			return StreamApi.of(StreamClient.builder().endpoint(messagesEndpoint).build(ProviderHolder.PROVIDER));
+		}
+
+		@Override
+		public SecretsApi secretsClient() {
+			return SecretsClientHolder.CLIENT;
+		}
+
+		@Override
+		public VaultsApi vaultsClient() {
+			return VaultsClientHolder.CLIENT;
+		}
+	}
+
+	// the holder classes are initialized by the JVM on first access only
+
+	private static final class ProviderHolder {
+		private static final ResourcePrincipalAuthenticationDetailsProvider PROVIDER = ResourcePrincipalAuthenticationDetailsProvider
+				.builder().build();
+	}
+
+	private static final class StreamAdminClientHolder {
+		private static final StreamAdminApi CLIENT = StreamAdminApi
+				.of(StreamAdminClient.builder().build(ProviderHolder.PROVIDER));
+	}
+
+	private static final class SecretsClientHolder {
+		private static final SecretsApi CLIENT = SecretsClient.builder()
+				.build(ProviderHolder.PROVIDER)::getSecretBundleByName;
+	}
+
+	private static final class VaultsClientHolder {
+		private static final VaultsApi CLIENT = VaultsApi.of(VaultsClient.builder().build(ProviderHolder.PROVIDER));
+	}
+
+}
@@ -9,50 +9,33 @@ package com.example.fn;
 
 import java.io.IOException;
 import java.io.InputStream;
-import java.net.URI;
+import java.io.UncheckedIOException;
 import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
-import java.net.http.HttpRequest.Builder;
 import java.net.http.HttpResponse;
 import java.net.http.HttpResponse.BodyHandlers;
-import java.util.Arrays;
+import java.net.http.HttpTimeoutException;
 import java.util.Base64;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import javax.ws.rs.core.Response.Status.Family;
 
-import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fnproject.fn.api.InputEvent;
 import com.fnproject.fn.api.httpgateway.HTTPGatewayContext;
-import com.oracle.bmc.auth.ResourcePrincipalAuthenticationDetailsProvider;
-import com.oracle.bmc.secrets.SecretsClient;
 import com.oracle.bmc.secrets.model.Base64SecretBundleContentDetails;
 import com.oracle.bmc.secrets.requests.GetSecretBundleByNameRequest;
 import com.oracle.bmc.secrets.responses.GetSecretBundleByNameResponse;
-import com.oracle.bmc.streaming.StreamAdminClient;
-import com.oracle.bmc.streaming.StreamClient;
-import com.oracle.bmc.streaming.model.PutMessagesDetails;
-import com.oracle.bmc.streaming.model.PutMessagesDetailsEntry;
-import com.oracle.bmc.streaming.model.PutMessagesResultEntry;
-import com.oracle.bmc.streaming.model.Stream;
-import com.oracle.bmc.streaming.model.Stream.LifecycleState;
-import com.oracle.bmc.streaming.requests.GetStreamRequest;
-import com.oracle.bmc.streaming.requests.ListStreamsRequest;
-import com.oracle.bmc.streaming.requests.PutMessagesRequest;
-import com.oracle.bmc.streaming.responses.GetStreamResponse;
-import com.oracle.bmc.streaming.responses.ListStreamsResponse;
-import com.oracle.bmc.streaming.responses.PutMessagesResponse;
 
 public class ReadDataStreamFunction {
 
 	private static final Logger LOGGER = Logger.getLogger(ReadDataStreamFunction.class.getName());
-	private final ResourcePrincipalAuthenticationDetailsProvider provider = ResourcePrincipalAuthenticationDetailsProvider
-			.builder().build();
+	// Auth tokens read from the Vault, shared by the invocations of the container
+	private final SecretCache secretCache = new SecretCache(this::getSecretFromVault);
 	private static final String VAULT_OCID = System.getenv().get("vault_ocid");
 	private static final String UNRECOVERABLE_ERROR_STREAM_OCID = System.getenv()
 			.get("unrecoverable_error_stream_ocid");
@@ -62,24 +45,30 @@ public class ReadDataStreamFunction {
 			.get("internalserver_error_stream_ocid");
 	private static final String DEFAULT_ERROR_STREAM_OCID = System.getenv().get("default_error_stream_ocid");
 	private static final String STREAM_COMPARTMENT_OCID = System.getenv().get("stream_compartment_ocid");
-	private static final String[] OPERATIONS = new String[] { "PUT", "POST", "DELETE" };
 	private static final List<String> STREAM_OCIDS = List.of(UNRECOVERABLE_ERROR_STREAM_OCID,
 			SERVICEUNAVAILABLE_ERROR_STREAM_OCID, INTERNALSERVER_ERROR_STREAM_OCID, DEFAULT_ERROR_STREAM_OCID);
+	// No. of messages with different stream keys that are sent to the targets at
+	// the same time. 1 keeps the messages of a batch strictly sequential.
+	private static final int DISPATCH_PARALLELISM = FunctionConfig.intValue("dispatch_parallelism", 1);
+	private static final Executor DISPATCH_EXECUTOR = createDispatchExecutor();
+	// No. of messages read from the batch and not yet processed
+	private static final int DISPATCH_MAX_IN_FLIGHT = FunctionConfig.intValue("dispatch_max_in_flight",
+			TaskExecutors.isVirtual() ? TaskExecutors.getVirtualThreadMaxConcurrency()
+					: 2 * Math.max(1, DISPATCH_PARALLELISM));
 
 	/**
-	 * @param incomingMessage
+	 * @param inputEvent
 	 * @param httpGatewayContext
 	 * @return
 	 * 
 	 * 
-	 *         This is the entry point of the function execution.
-	 * @throws InterruptedException
-	 * @throws IOException
+	 *         This is the entry point of the function execution. The batch of
+	 *         stream messages is read incrementally, each message is dispatched
+	 *         as soon as it is read.
 	 */
-	public String handleRequest(String incomingMessage, HTTPGatewayContext httpGatewayContext) {
+	public String handleRequest(InputEvent inputEvent, HTTPGatewayContext httpGatewayContext) {
 
-		ObjectMapper objectMapper = new ObjectMapper();
-		StreamAdminClient streamAdminClient = StreamAdminClient.builder().build(provider);
+		StreamAdminApi streamAdminClient = OciClients.streamAdminClient();
 
 		if (!streamExist(streamAdminClient)) {
 			httpGatewayContext.setStatusCode(500);
@@ -89,39 +78,148 @@ public class ReadDataStreamFunction {
 		}
 		// Read the stream messages
 
+		ErrorStreamPublisher errorStreamPublisher = new ErrorStreamPublisher(streamAdminClient);
+		KeyOrderedDispatcher dispatcher = new KeyOrderedDispatcher(DISPATCH_EXECUTOR, DISPATCH_MAX_IN_FLIGHT);
+		// no target call outlasts the invocation, the messages left when the deadline
+		// is close are moved to the default error stream
+		InvocationDeadline deadline = InvocationDeadline.of(httpGatewayContext);
+		// transient target failures are retried within the time budget of the batch
+		TargetRetryPolicy retryPolicy = TargetRetryPolicy.forBatch(deadline);
 		try {
-			JsonNode jsonTree = objectMapper.readTree(incomingMessage);
+			inputEvent.consumeBody(body -> {
+				try {
+					readStreamMessages(body, dispatcher, errorStreamPublisher, retryPolicy, deadline);
+					return null;
+				} catch (IOException e) {
+					throw new UncheckedIOException(e);
+				}
+			});
 
-			for (int i = 0; i < jsonTree.size(); i++) {
-				JsonNode jsonNode = jsonTree.get(i);
-				// Get the stream key and value
+		} catch (UncheckedIOException e) {
+			httpGatewayContext.setStatusCode(500);
+			LOGGER.severe(
+					"Message processing failed with JSONProcessing exception" + e.getCause().getLocalizedMessage());
+			return "failed";
 
-				String streamKey = jsonNode.get("key").asText();
-				String streamMessage = jsonNode.get("value").asText();
-				// Decode the stream message
+		} finally {
+			// Return only after every message is delivered or moved to an error stream
+			try {
+				dispatcher.awaitCompletion();
+			} finally {
+				errorStreamPublisher.flush();
+				HostBulkhead.logMetrics();
+				FunctionMetrics.logAndReset();
+			}
+		}
 
-				String decodedMessageValue = new String(Base64.getDecoder().decode(streamMessage.getBytes()));
+		if (errorStreamPublisher.getUnpublishedCount() > 0) {
+			httpGatewayContext.setStatusCode(500);
+			LOGGER.log(Level.SEVERE, "{0} failed messages could not be written to the error streams.",
+					errorStreamPublisher.getUnpublishedCount());
+			return "failed";
+		}
 
-				try {
+		return "success";
 
-					processMessage(decodedMessageValue, streamKey, streamAdminClient);
+	}
 
-				} catch (Exception ex) {
+	/**
+	 * @param body
+	 * @param dispatcher
+	 * @param errorStreamPublisher
+	 * @param retryPolicy
+	 * @param deadline
+	 * @throws IOException
+	 * 
+	 *                             This method reads the array of stream messages
+	 *                             sent by the Service Connector and hands every
+	 *                             message to the dispatcher as soon as it is read,
+	 *                             so only the messages in flight are held in
+	 *                             memory.
+	 */
+	private void readStreamMessages(InputStream body, KeyOrderedDispatcher dispatcher,
+			ErrorStreamPublisher errorStreamPublisher, TargetRetryPolicy retryPolicy, InvocationDeadline deadline)
+			throws IOException {
 
-					LOGGER.severe("Message failed with exception " + ex.getLocalizedMessage());
+		// Messages with the same stream key are processed in the order of the batch
+		ConnectorBatchReader.read(body, (streamKey, streamMessage, streamPosition) -> dispatcher.submit(streamKey,
+				() -> dispatchMessage(streamMessage, streamKey, streamPosition, errorStreamPublisher, retryPolicy,
+						deadline)));
 
-					populateErrorStream(streamMessage, streamKey, UNRECOVERABLE_ERROR_STREAM_OCID, streamAdminClient);
-				}
+	}
+
+	/**
+	 * @param streamMessage
+	 * @param streamKey
+	 * @param streamPosition
+	 * @param errorStreamPublisher
+	 * @param retryPolicy
+	 * @param deadline
+	 * 
+	 *                             This method processes a single decoded stream
+	 *                             message. A message that fails with an exception
+	 *                             is moved to the unrecoverable error stream, a
+	 *                             message dispatched after the deadline is moved to
+	 *                             the default error stream without calling the
+	 *                             target. A target call that times out is not a
+	 *                             failure of the message: it is moved to the
+	 *                             default error stream if the deadline cut it
+	 *                             off, else to the service unavailable error
+	 *                             stream, both to be replayed.
+	 */
+	private void dispatchMessage(byte[] streamMessage, String streamKey, String streamPosition,
+			ErrorStreamPublisher errorStreamPublisher, TargetRetryPolicy retryPolicy, InvocationDeadline deadline) {
+
+		FunctionMetrics.increment("processed");
+
+		if (deadline.isExpired()) {
+			LOGGER.log(Level.WARNING, "Invocation deadline is close, message moved to the default error stream.");
+			errorStreamPublisher.add(DEFAULT_ERROR_STREAM_OCID, streamKey, streamMessage);
+			return;
+		}
+
+		try {
+
+			processMessage(streamMessage, streamKey, streamPosition, errorStreamPublisher, retryPolicy, deadline);
 
+		} catch (HttpTimeoutException ex) {
+
+			if (deadline.isExpired()) {
+				LOGGER.log(Level.WARNING, "Target call cut off by the invocation deadline, message moved to the "
+						+ "default error stream. {0}", ex.getLocalizedMessage());
+				errorStreamPublisher.add(DEFAULT_ERROR_STREAM_OCID, streamKey, streamMessage);
+			} else {
+				LOGGER.log(Level.WARNING, "Target call timed out, message moved to the service unavailable "
+						+ "error stream. {0}", ex.getLocalizedMessage());
+				errorStreamPublisher.add(SERVICEUNAVAILABLE_ERROR_STREAM_OCID, streamKey, streamMessage);
 			}
-		} catch (JsonProcessingException e) {
-			httpGatewayContext.setStatusCode(500);
-			LOGGER.severe("Message processing failed with JSONProcessing exception" + e.getLocalizedMessage());
-			return "failed";
 
+		} catch (Exception ex) {
+
+			LOGGER.severe("Message failed with exception " + ex.getLocalizedMessage());
+
+			// the message is moved in the encoded form it was read from the stream
+			errorStreamPublisher.add(UNRECOVERABLE_ERROR_STREAM_OCID, streamKey,
+					Base64.getEncoder().encode(streamMessage));
 		}
 
-		return "success";
+	}
+
+	/**
+	 * @return Executor
+	 * 
+	 *         This method creates the executor used to dispatch the messages. It
+	 *         is shared by all the invocations of a container. With virtual
+	 *         threads every message is dispatched on its own virtual thread.
+	 */
+	private static Executor createDispatchExecutor() {
+
+		if (DISPATCH_PARALLELISM <= 1 && !TaskExecutors.isVirtual()) {
+			// run the messages on the invoking thread
+			return Runnable::run;
+		}
+
+		return TaskExecutors.create("dispatch", DISPATCH_PARALLELISM);
 
 	}
 
@@ -129,20 +227,16 @@ public class ReadDataStreamFunction {
 	 * @param streamAdminClient
 	 * @return boolean
 	 * 
-	 *         This method checks if a stream exist
+	 *         This method checks if the configured error streams exist
 	 */
-	private boolean streamExist(StreamAdminClient streamAdminClient) {
+	private boolean streamExist(StreamAdminApi streamAdminClient) {
 
 		boolean streamsExist = true;
 
 		for (int i = 0; i < STREAM_OCIDS.size(); i++) {
 
-			ListStreamsRequest listRequest = ListStreamsRequest.builder().compartmentId(STREAM_COMPARTMENT_OCID)
-					.id(STREAM_OCIDS.get(i)).lifecycleState(LifecycleState.Active).build();
-
-			ListStreamsResponse listResponse = streamAdminClient.listStreams(listRequest);
-
-			if (listResponse.getItems().isEmpty()) {
+			// validated streams are cached by the container
+			if (!StreamClientCache.isActive(STREAM_OCIDS.get(i), STREAM_COMPARTMENT_OCID, streamAdminClient)) {
 
 				streamsExist = false;
 
@@ -162,115 +256,72 @@ public class ReadDataStreamFunction {
 	/**
 	 * @param streamMessage
 	 * @param streamKey
-	 * @param StreamAdminClient
+	 * @param streamPosition
+	 * @param errorStreamPublisher
+	 * @param retryPolicy
+	 * @param deadline
 	 * 
 	 * @throws InterruptedException
 	 * @throws IOException          This method parses the incoming message and
 	 *                              processes it based on the targetRestApiOperation
-	 *                              defined in the message
+	 *                              defined in the message. Only a message whose
+	 *                              retries are used up is moved to an error stream.
+	 *                              A message already delivered by the container is
+	 *                              skipped without calling the Vault or the target.
 	 */
-	private void processMessage(String streamMessage, String streamKey, StreamAdminClient streamAdminClient)
+	private void processMessage(byte[] streamMessage, String streamKey, String streamPosition,
+			ErrorStreamPublisher errorStreamPublisher, TargetRetryPolicy retryPolicy, InvocationDeadline deadline)
 			throws IOException, InterruptedException {
-		HttpClient httpClient = HttpClient.newHttpClient();
-
-		String targetRestApiPayload = "";
-		String vaultSecretName = "";
-		String targetRestApiOperation = "";
-		String targetRestApi = "";
-		StringBuilder failureMessage = new StringBuilder("");
-		boolean processingFailed = false;
-
 		int responseStatusCode = 0;
-		ObjectMapper objectMapper = new ObjectMapper();
-		HttpRequest request = null;
-		JsonNode jsonNode = null;
-
-		jsonNode = objectMapper.readTree(streamMessage);
-
-		// parse the incoming message
-
-		if (jsonNode.has("vaultSecretName")) {
-
-			vaultSecretName = jsonNode.get("vaultSecretName").asText();
-		}
 
-		if (jsonNode.get("targetRestApi") != null) {
-			targetRestApi = jsonNode.get("targetRestApi").asText();
-		} else {
-			processingFailed = true;
-			failureMessage = new StringBuilder(
-					"Message could not be processed as targetRestApi node is not found in payload.");
-		}
-		if (jsonNode.has("targetRestApiOperation")) {
-
-			targetRestApiOperation = jsonNode.get("targetRestApiOperation").asText();
-			if (Arrays.stream(OPERATIONS).noneMatch(targetRestApiOperation::equals)) {
-				processingFailed = true;
-				failureMessage.append(
-						" Message could not be processed as targetRestApiOperation node doesnt contain PUT,POST or DELETE.");
-			}
-
-		} else {
-			processingFailed = true;
-			failureMessage
-					.append(" Message could not be processed as targetRestApiOperation node is not found in payload.");
-		}
+		// parse the stream message
+		long parseStart = System.nanoTime();
+		DataSyncMessage message = DataSyncMessage.read(streamMessage);
+		String failureMessage = message.validate();
+		FunctionMetrics.recordLatency("parse", parseStart);
 
-		if (jsonNode.get("targetRestApiPayload") != null) {
-			targetRestApiPayload = jsonNode.get("targetRestApiPayload").toString();
-		}
-		if (processingFailed) {
-			LOGGER.log(Level.SEVERE, failureMessage.toString());
-			populateErrorStream(streamMessage, streamKey, UNRECOVERABLE_ERROR_STREAM_OCID, streamAdminClient);
+		if (failureMessage != null) {
+			LOGGER.log(Level.SEVERE, failureMessage);
+			errorStreamPublisher.add(UNRECOVERABLE_ERROR_STREAM_OCID, streamKey, streamMessage);
 			return;
 
 		}
-		// Get the targetRestApiHeaders section of the json payload
-		JsonNode headersNode = jsonNode.get("targetRestApiHeaders");
-		Map<String, String> httpHeaders = new HashMap<>();
-
-		for (int i = 0; i < headersNode.size(); i++) {
-			JsonNode headerNode = headersNode.get(i);
-			httpHeaders.put(headerNode.get("key").asText(), headerNode.get("value").asText());
-
-		}
-		// process the messages based on the operation
-		switch (targetRestApiOperation) {
-
-		case "PUT": {
-			Builder builder = HttpRequest.newBuilder().PUT(HttpRequest.BodyPublishers.ofString(targetRestApiPayload))
-					.uri(URI.create(targetRestApi));
-
-			request = constructHttpRequest(builder, httpHeaders, vaultSecretName);
-			break;
 
+		// messages with the same key have the same stream key, so they are never in
+		// flight at the same time
+		String deliveryKey = DeliveredMessages.keyOf(streamKey, streamPosition, streamMessage, message);
+		if (deliveryKey != null && DeliveredMessages.isDelivered(deliveryKey)) {
+			LOGGER.log(Level.INFO, "Message to {0} was already delivered, not sent again.",
+					message.getTargetRestApi());
+			FunctionMetrics.increment("skipped_duplicate");
+			return;
 		}
 
-		case "POST": {
+		String vaultSecretName = message.getVaultSecretName();
 
-			Builder builder = HttpRequest.newBuilder().POST(HttpRequest.BodyPublishers.ofString(targetRestApiPayload))
-					.uri(URI.create(targetRestApi));
+		// the auth token is read from the Vault only if it is not cached
+		HttpRequest request = TargetRequests.create(message, secretCache::get);
 
-			request = constructHttpRequest(builder, httpHeaders, vaultSecretName);
-			break;
-		}
+		// make the http request call
 
-		case "DELETE": {
-			Builder builder = HttpRequest.newBuilder().DELETE().uri(URI.create(targetRestApi));
+		HttpClient httpClient = SharedHttpClient.forTarget(request.uri());
+		HttpResponse<Void> response = sendWithRetry(httpClient, request, retryPolicy, deadline);
 
-			request = constructHttpRequest(builder, httpHeaders, vaultSecretName);
-			break;
-		}
-		default:
-			LOGGER.log(Level.SEVERE, "No processing action taken");
+		if (response == null) {
+			// the target host is failing or overloaded, it is not called until its
+			// circuit breaker or bulkhead lets calls through again
+			LOGGER.log(Level.WARNING, "Target host of {0} is not accepting calls, message not sent.", request.uri());
+			errorStreamPublisher.add(SERVICEUNAVAILABLE_ERROR_STREAM_OCID, streamKey, streamMessage);
+			return;
 		}
-
-		// make the http request call
-
-		HttpResponse<InputStream> response = httpClient.send(request, BodyHandlers.ofInputStream());
 		// get the status code
 		responseStatusCode = response.statusCode();
 
+		if (responseStatusCode == 401 && !vaultSecretName.equals("")) {
+			// the token may have been rotated, read it again from the Vault next time
+			secretCache.invalidate(vaultSecretName);
+		}
+
 		// Populate error streams in case of a failure
 		String errorStreamOCID = "";
 
@@ -298,33 +349,106 @@ public class ReadDataStreamFunction {
 
 			}
 
-			populateErrorStream(streamMessage, streamKey, errorStreamOCID, streamAdminClient);
+			errorStreamPublisher.add(errorStreamOCID, streamKey, streamMessage);
+
+		} else if (deliveryKey != null) {
+			DeliveredMessages.markDelivered(deliveryKey);
 		}
 
 	}
 
 	/**
-	 * @param builder
-	 * @param httpHeaders
-	 * @param vaultSecretName
-	 * @return HttpRequest
+	 * @param httpClient
+	 * @param request
+	 * @param retryPolicy
+	 * @param deadline
+	 * @return HttpResponse Returns the response of the last call, or null if the
+	 *         circuit breaker of the target host is open or its bulkhead is full
+	 *         before a response was received.
+	 * @throws IOException
+	 * @throws InterruptedException
 	 * 
-	 *         This method constructs http request for the target application call
+	 *                              This method calls the target application. A
+	 *                              transient failure status or an I/O exception is
+	 *                              retried as long as the retry policy allows.
+	 *                              Every call times out at the deadline at the
+	 *                              latest.
 	 */
-	private HttpRequest constructHttpRequest(Builder builder, Map<String, String> httpHeaders, String vaultSecretName) {
+	private HttpResponse<Void> sendWithRetry(HttpClient httpClient, HttpRequest request,
+			TargetRetryPolicy retryPolicy, InvocationDeadline deadline) throws IOException, InterruptedException {
 
-		if (!vaultSecretName.equals("")) {
-			String authorizationHeaderName = "Authorization";
-			// Read the Vault to get the auth token
-			String authToken = getSecretFromVault(vaultSecretName);
-			builder.header(authorizationHeaderName, authToken);
-		}
-		// add targetRestApiHeaders to the request
+		HostCircuitBreaker circuitBreaker = HostCircuitBreaker.forTarget(request.uri());
+		HostBulkhead bulkhead = HostBulkhead.forTarget(request.uri());
+		// response of the previous attempt, returned if a retry is not permitted, so
+		// that the message is routed by its own status
+		HttpResponse<Void> lastResponse = null;
+
+		for (int attempt = 1;; attempt++) {
+
+			if (!circuitBreaker.tryAcquire()) {
+				return lastResponse;
+			}
+
+			try {
+				bulkhead.acquire(deadline.remainingMillis());
+			} catch (RejectedExecutionException e) {
+				circuitBreaker.onCancelled();
+				LOGGER.log(Level.INFO, e.getLocalizedMessage());
+				return lastResponse;
+			} catch (InterruptedException e) {
+				circuitBreaker.onCancelled();
+				throw e;
+			}
+
+			long start = System.nanoTime();
+			HttpResponse<Void> response;
+
+			try {
+				// the response body is not used, discarding it releases the connection back
+				// to the pool
+				response = httpClient.send(TargetTimeouts.withDeadline(request, deadline), BodyHandlers.discarding());
 
-		httpHeaders.forEach((k, v) -> builder.header(k, v));
-		// add authorization token to the request
+			} catch (IOException e) {
+				FunctionMetrics.recordTargetLatency(request.uri(), start);
+				bulkhead.release(System.nanoTime() - start, true);
+				circuitBreaker.onFailure();
+				lastResponse = null;
 
-		return builder.build();
+				if (!retryPolicy.awaitRetry(attempt, Optional.empty())) {
+					throw e;
+				}
+				LOGGER.log(Level.INFO, "Retrying {0} after {1}, attempt {2}.",
+						new Object[] { request.uri(), e.getLocalizedMessage(), attempt });
+				FunctionMetrics.increment("retried");
+				continue;
+
+			} catch (InterruptedException | RuntimeException e) {
+				bulkhead.cancel();
+				circuitBreaker.onCancelled();
+				throw e;
+			}
+
+			FunctionMetrics.recordTargetLatency(request.uri(), start);
+
+			// the bulkhead is released before waiting for a retry
+			boolean hostFailed = HostCircuitBreaker.isHostFailure(response.statusCode());
+			bulkhead.release(System.nanoTime() - start, hostFailed);
+
+			if (hostFailed) {
+				circuitBreaker.onFailure();
+			} else {
+				circuitBreaker.onSuccess();
+			}
+
+			if (!retryPolicy.isRetriable(response.statusCode())
+					|| !retryPolicy.awaitRetry(attempt, response.headers().firstValue("Retry-After"))) {
+				return response;
+			}
+			lastResponse = response;
+			LOGGER.log(Level.INFO, "Retrying {0} after status {1}, attempt {2}.",
+					new Object[] { request.uri(), response.statusCode(), attempt });
+			FunctionMetrics.increment("retried");
+		}
 
 	}
 
@@ -336,80 +460,27 @@ public class ReadDataStreamFunction {
 	 *         secretName
 	 */
 	private String getSecretFromVault(String vaultSecretName) {
-		SecretsClient secretsClient = new SecretsClient(provider);
+		SecretsApi secretsClient = OciClients.secretsClient();
 
 		GetSecretBundleByNameRequest getSecretBundleByNameRequest = GetSecretBundleByNameRequest.builder()
 
 				.secretName(vaultSecretName).vaultId(VAULT_OCID).build();
 
 		// get the secret
-		GetSecretBundleByNameResponse getSecretBundleResponse = secretsClient
-				.getSecretBundleByName(getSecretBundleByNameRequest);
+		long start = System.nanoTime();
+		GetSecretBundleByNameResponse getSecretBundleResponse;
+		try {
+			getSecretBundleResponse = secretsClient.getSecretBundleByName(getSecretBundleByNameRequest);
+		} finally {
+			FunctionMetrics.recordLatency("vault", start);
+		}
 
 		// get the bundle content details
 		Base64SecretBundleContentDetails base64SecretBundleContentDetails = (Base64SecretBundleContentDetails) getSecretBundleResponse
 				.getSecretBundle().getSecretBundleContent();
-		secretsClient.close();
 
 		return base64SecretBundleContentDetails.getContent();
 
 	}
 
-	/**
-	 * @param streamOCID
-	 * @return Stream
-	 * 
-	 * 
-	 *         This method obtains the Stream object from the stream OCID.
-	 */
-	private Stream getStream(String streamOCID, StreamAdminClient streamAdminClient) {
-
-		GetStreamResponse getResponse = streamAdminClient
-				.getStream(GetStreamRequest.builder().streamId(streamOCID).build());
-		return getResponse.getStream();
-	}
-
-	/**
-	 * @param streamMessage
-	 * @param streamKey
-	 * @param errorStreamOCID
-	 * @param StreamAdminClient
-	 * 
-	 *                          This method is used to populate the error stream
-	 *                          with the failed message
-	 */
-	private void populateErrorStream(String streamMessage, String streamKey, String errorStreamOCID,
-			StreamAdminClient streamAdminClient) {
-
-		// Construct the stream message
-
-		PutMessagesDetails messagesDetails = PutMessagesDetails.builder().messages(Arrays.asList(
-				PutMessagesDetailsEntry.builder().key(streamKey.getBytes()).value(streamMessage.getBytes()).build()))
-				.build();
-
-		PutMessagesRequest putRequest = PutMessagesRequest.builder().streamId(errorStreamOCID)
-				.putMessagesDetails(messagesDetails).build();
-
-		// Read the response
-
-		PutMessagesResponse putResponse = StreamClient.builder().stream(getStream(errorStreamOCID, streamAdminClient))
-				.build(provider).putMessages(putRequest);
-		for (PutMessagesResultEntry entry : putResponse.getPutMessagesResult().getEntries()) {
-			if (entry.getError() != null) {
-
-				LOGGER.log(Level.SEVERE, String.format("Put message error  %s, in stream with OCID %s.",
-						entry.getErrorMessage(), errorStreamOCID));
-
-			} else {
-
-				LOGGER.log(Level.INFO,
-						String.format("Message pushed to offset %s, in partition  %s in stream with OCID %s",
-								entry.getOffset(), entry.getPartition(), errorStreamOCID));
-
-			}
-
-		}
-
-	}
-
 }
@@ -0,0 +1,65 @@
+// Copyright (c)  2022,  Oracle and/or its affiliates.
+// Licensed under the Universal Permissive License v 1.0 as shown at https://oss.oracle.com/licenses/upl.
+
+//Holds the HttpClient used for the target application calls. 
+//One client is created per Function container so that repeated calls to the same target host 
+//reuse the already open connections. Targets with their own connect timeout get a client of their own.
+
+package com.example.fn;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpClient.Redirect;
+import java.net.http.HttpClient.Version;
+import java.time.Duration;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+final class SharedHttpClient {
+
+	// The JDK reads the connection pool settings once, when the first client is
+	// built, so they are applied as system properties before that.
+	private static final int CONNECTION_POOL_SIZE = FunctionConfig.intValue("http_connection_pool_size", 0);
+	private static final int KEEPALIVE_TIMEOUT_SECONDS = FunctionConfig.intValue("http_keepalive_timeout_seconds",
+			1200);
+	private static final int HTTP2_MAX_STREAMS = FunctionConfig.intValue("http2_max_streams", 100);
+	private static final String HTTP_VERSION = FunctionConfig.stringValue("http_version", "HTTP_2");
+	// clients by connect timeout, the default one included
+	private static final ConcurrentMap<Duration, HttpClient> CLIENTS = new ConcurrentHashMap<>();
+
+	private SharedHttpClient() {
+	}
+
+	/**
+	 * @param targetUri
+	 * @return HttpClient
+	 * 
+	 *         This method returns the container scoped HttpClient with the connect
+	 *         timeout of the target host, building it on first use.
+	 */
+	static HttpClient forTarget(URI targetUri) {
+		return CLIENTS.computeIfAbsent(TargetTimeouts.connectTimeout(targetUri), SharedHttpClient::build);
+	}
+
+	private static HttpClient build(Duration connectTimeout) {
+
+		setIfAbsent("jdk.httpclient.connectionPoolSize", CONNECTION_POOL_SIZE);
+		setIfAbsent("jdk.httpclient.keepalive.timeout", KEEPALIVE_TIMEOUT_SECONDS);
+		setIfAbsent("jdk.httpclient.maxstreams", HTTP2_MAX_STREAMS);
+
+		// HTTP/2 multiplexes the calls to a host over one connection, the client
+		// falls back to HTTP/1.1 when the target does not support it
+		Version version = "HTTP_1_1".equalsIgnoreCase(HTTP_VERSION) ? Version.HTTP_1_1 : Version.HTTP_2;
+
+		return HttpClient.newBuilder().version(version).followRedirects(Redirect.NEVER).connectTimeout(connectTimeout)
+				.build();
+
+	}
+
+	private static void setIfAbsent(String property, int value) {
+		if (System.getProperty(property) == null) {
+			System.setProperty(property, String.valueOf(value));
+		}
+	}
+
+}
@@ -0,0 +1,40 @@
+// Copyright (c)  2022,  Oracle and/or its affiliates.
+// Licensed under the Universal Permissive License v 1.0 as shown at https://oss.oracle.com/licenses/upl.
+
+//The Streaming admin calls made by the Functions, to look up a stream and its messages endpoint.
+
+package com.example.fn;
+
+import com.oracle.bmc.streaming.StreamAdminClient;
+import com.oracle.bmc.streaming.requests.GetStreamRequest;
+import com.oracle.bmc.streaming.requests.ListStreamsRequest;
+import com.oracle.bmc.streaming.responses.GetStreamResponse;
+import com.oracle.bmc.streaming.responses.ListStreamsResponse;
+
+interface StreamAdminApi {
+
+	GetStreamResponse getStream(GetStreamRequest request);
+
+	ListStreamsResponse listStreams(ListStreamsRequest request);
+
+	/**
+	 * @param streamAdminClient
+	 * @return StreamAdminApi Returns the calls of the StreamAdminClient.
+	 */
+	static StreamAdminApi of(StreamAdminClient streamAdminClient) {
+
+		return new StreamAdminApi() {
+
+			@Override
+			public GetStreamResponse getStream(GetStreamRequest request) {
+				return streamAdminClient.getStream(request);
+			}
+
+			@Override
+			public ListStreamsResponse listStreams(ListStreamsRequest request) {
+				return streamAdminClient.listStreams(request);
+			}
+		};
+	}
+
+}
@@ -0,0 +1,134 @@
+// Copyright (c)  2022,  Oracle and/or its affiliates.
+// Licensed under the Universal Permissive License v 1.0 as shown at https://oss.oracle.com/licenses/upl.
+
+//Decides if and when a failed target application call is made again within the same invocation.
+//Transient failures are retried with exponential backoff and full jitter, or after the time given by
+//a Retry-After header. All the retries of a batch share one time budget, which ends at the invocation
+//deadline at the latest, so a slow target cannot hold the batch until the Function times out.
+
+package com.example.fn;
+
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.Arrays;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Collectors;
+
+final class TargetRetryPolicy {
+
+	private static final Logger LOGGER = Logger.getLogger(TargetRetryPolicy.class.getName());
+	// No. of calls made for a message, the first call included
+	private static final int MAX_ATTEMPTS = Math.max(1, FunctionConfig.intValue("target_retry_attempts", 3));
+	private static final long BASE_DELAY_MILLIS = FunctionConfig.intValue("target_retry_base_delay_millis", 100);
+	private static final long MAX_DELAY_MILLIS = FunctionConfig.intValue("target_retry_max_delay_millis", 2000);
+	private static final long BATCH_BUDGET_NANOS = TimeUnit.MILLISECONDS
+			.toNanos(FunctionConfig.intValue("target_retry_budget_millis", 10000));
+	private static final Set<Integer> RETRIABLE_STATUS_CODES = Arrays
+			.stream(FunctionConfig.stringValue("target_retry_status_codes", "429,500,502,503,504").split(","))
+			.map(String::trim).filter(code -> code.matches("\\d{3}")).map(Integer::valueOf)
+			.collect(Collectors.toSet());
+
+	// end of the retry time budget, on the System.nanoTime() scale
+	private final long budgetEnd;
+
+	private TargetRetryPolicy(long budgetEnd) {
+		this.budgetEnd = budgetEnd;
+	}
+
+	/**
+	 * @param deadline
+	 * @return TargetRetryPolicy
+	 *
+	 *         This method returns the policy of a batch of messages. Its time
+	 *         budget starts now and does not extend past the deadline.
+	 */
+	static TargetRetryPolicy forBatch(InvocationDeadline deadline) {
+
+		long budgetNanos = Math.min(BATCH_BUDGET_NANOS, TimeUnit.MILLISECONDS.toNanos(deadline.remainingMillis()));
+		return new TargetRetryPolicy(System.nanoTime() + budgetNanos);
+	}
+
+	/**
+	 * @param statusCode
+	 * @return boolean Returns true if the target responded with a transient
+	 *         failure.
+	 */
+	boolean isRetriable(int statusCode) {
+		return RETRIABLE_STATUS_CODES.contains(statusCode);
+	}
+
+	/**
+	 * @param attempt
+	 * @param retryAfter
+	 * @return boolean Returns true if the call should be made again.
+	 *
+	 *         This method waits before the next attempt after attempt failed. It
+	 *         returns false without waiting if no attempts are left or the wait
+	 *         would exceed the time budget of the batch.
+	 */
+	boolean awaitRetry(int attempt, Optional<String> retryAfter) {
+
+		if (attempt >= MAX_ATTEMPTS) {
+			return false;
+		}
+
+		long delayMillis = retryAfter.map(TargetRetryPolicy::parseRetryAfterMillis).filter(delay -> delay >= 0)
+				.orElseGet(() -> backoffMillis(attempt));
+
+		if (System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(delayMillis) - budgetEnd > 0) {
+			LOGGER.log(Level.INFO, "Retry time budget of the batch is used up.");
+			return false;
+		}
+
+		try {
+			Thread.sleep(delayMillis);
+			return true;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return false;
+		}
+
+	}
+
+	/**
+	 * @param attempt
+	 * @return long Returns a random delay between 0 and the exponential backoff of
+	 *         the attempt.
+	 */
+	private static long backoffMillis(int attempt) {
+
+		long backoff = Math.min(MAX_DELAY_MILLIS, BASE_DELAY_MILLIS << Math.min(attempt - 1, 20));
+		return ThreadLocalRandom.current().nextLong(backoff + 1);
+	}
+
+	/**
+	 * @param retryAfter
+	 * @return long Returns the delay given by a Retry-After header, in seconds or
+	 *         as an HTTP date, or -1 if it cannot be read.
+	 */
+	private static long parseRetryAfterMillis(String retryAfter) {
+
+		try {
+			return TimeUnit.SECONDS.toMillis(Long.parseLong(retryAfter.trim()));
+		} catch (NumberFormatException e) {
+			// not in seconds, try the HTTP date format
+		}
+
+		try {
+			ZonedDateTime retryTime = ZonedDateTime.parse(retryAfter.trim(), DateTimeFormatter.RFC_1123_DATE_TIME);
+			return Math.max(0, Duration.between(ZonedDateTime.now(retryTime.getZone()), retryTime).toMillis());
+		} catch (DateTimeParseException e) {
+			LOGGER.log(Level.WARNING, "Invalid Retry-After header {0}", retryAfter);
+			return -1;
+		}
+
+	}
+
+}
@@ -0,0 +1,40 @@
+// Copyright (c)  2022,  Oracle and/or its affiliates.
+// Licensed under the Universal Permissive License v 1.0 as shown at https://oss.oracle.com/licenses/upl.
+
+//The Vault calls made by the Functions, to look up and create the secrets holding the auth tokens.
+
+package com.example.fn;
+
+import com.oracle.bmc.vault.VaultsClient;
+import com.oracle.bmc.vault.requests.CreateSecretRequest;
+import com.oracle.bmc.vault.requests.ListSecretsRequest;
+import com.oracle.bmc.vault.responses.CreateSecretResponse;
+import com.oracle.bmc.vault.responses.ListSecretsResponse;
+
+interface VaultsApi {
+
+	ListSecretsResponse listSecrets(ListSecretsRequest request);
+
+	CreateSecretResponse createSecret(CreateSecretRequest request);
+
+	/**
+	 * @param vaultsClient
+	 * @return VaultsApi Returns the calls of the VaultsClient.
+	 */
+	static VaultsApi of(VaultsClient vaultsClient) {
+
+		return new VaultsApi() {
+
+			@Override
+			public ListSecretsResponse listSecrets(ListSecretsRequest request) {
+				return vaultsClient.listSecrets(request);
+			}
+
+			@Override
+			public CreateSecretResponse createSecret(CreateSecretRequest request) {
+				return vaultsClient.createSecret(request);
+			}
+		};
+	}
+
+}
@@ -0,0 +1,142 @@
+// Copyright (c)  2022,  Oracle and/or its affiliates.
+// Licensed under the Universal Permissive License v 1.0 as shown at https://oss.oracle.com/licenses/upl.
+
+//Compares the two retry_execution_mode settings on a page of messages sent to a local target:
+//blocking sends the messages one after the other, async keeps up to retry_async_max_outstanding calls
+//outstanding. The score is in messages per second.
+
+package com.example.fn;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpResponse.BodyHandlers;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.sun.net.httpserver.HttpServer;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class RetryExecutionBenchmark {
+
+	private static final int PAGE_SIZE = 100;
+
+	// response time of the local target
+	@Param({ "0", "5", "20" })
+	public int targetLatencyMillis;
+
+	@Param({ "64" })
+	public int maxOutstanding;
+
+	private HttpServer target;
+	private ExecutorService targetExecutor;
+	private List<DataSyncMessage> page;
+	private HttpClient httpClient;
+
+	@Setup
+	public void setup() throws IOException {
+
+		targetExecutor = Executors.newFixedThreadPool(Math.max(maxOutstanding, 1));
+		target = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+		target.setExecutor(targetExecutor);
+		target.createContext("/", exchange -> {
+			try (InputStream body = exchange.getRequestBody()) {
+				body.readAllBytes();
+				if (targetLatencyMillis > 0) {
+					Thread.sleep(targetLatencyMillis);
+				}
+				exchange.sendResponseHeaders(200, -1);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			} finally {
+				exchange.close();
+			}
+		});
+		target.start();
+
+		String targetRestApi = "http://127.0.0.1:" + target.getAddress().getPort() + "/api/orders/";
+		page = new ArrayList<>(PAGE_SIZE);
+		for (int i = 0; i < PAGE_SIZE; i++) {
+			page.add(DataSyncMessage.read(("{\"vaultSecretName\":\"target-token\",\"targetRestApi\":\"" + targetRestApi
+					+ i + "\",\"targetRestApiOperation\":\"PUT\",\"targetRestApiPayload\":{\"orderId\":" + i
+					+ ",\"status\":\"SHIPPED\"},\"targetRestApiHeaders\":[{\"key\":\"Content-Type\","
+					+ "\"value\":\"application/json\"}]}").getBytes(UTF_8)));
+		}
+		httpClient = SharedHttpClient.forTarget(TargetRequests.create(page.get(0), this::authToken).uri());
+	}
+
+	@TearDown
+	public void tearDown() {
+		target.stop(0);
+		targetExecutor.shutdownNow();
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(PAGE_SIZE)
+	public int blocking() throws IOException, InterruptedException {
+
+		int succeeded = 0;
+		for (DataSyncMessage message : page) {
+			HttpResponse<Void> response = httpClient.send(TargetRequests.create(message, this::authToken),
+					BodyHandlers.discarding());
+			succeeded += response.statusCode() == 200 ? 1 : 0;
+		}
+		return succeeded;
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(PAGE_SIZE)
+	public int async() {
+
+		Semaphore outstanding = new Semaphore(maxOutstanding);
+		List<CompletableFuture<HttpResponse<Void>>> responses = new ArrayList<>(PAGE_SIZE);
+
+		for (DataSyncMessage message : page) {
+			// wait while the maximum no. of target calls are outstanding
+			outstanding.acquireUninterruptibly();
+			HttpRequest request = TargetRequests.create(message, this::authToken);
+			responses.add(httpClient.sendAsync(request, BodyHandlers.discarding())
+					.whenComplete((response, ex) -> outstanding.release()));
+		}
+
+		int succeeded = 0;
+		for (CompletableFuture<HttpResponse<Void>> response : responses) {
+			succeeded += response.join().statusCode() == 200 ? 1 : 0;
+		}
+		return succeeded;
+	}
+
+	private String authToken(String vaultSecretName) {
+		return "Bearer 3f6c1a0e-8d1b-4c55-9a3e-5b7f2e8d4c11";
+	}
+
+}
@@ -0,0 +1,79 @@
+// Copyright (c)  2022,  Oracle and/or its affiliates.
+// Licensed under the Universal Permissive License v 1.0 as shown at https://oss.oracle.com/licenses/upl.
+
+//Adds latency and failures to the calls of a local stand-in, so that a load test sees the delays,
+//throttling and server errors of the real service.
+
+package com.example.fn;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+import com.oracle.bmc.model.BmcException;
+
+final class FaultInjection {
+
+	private final long latencyMillis;
+	private final long jitterMillis;
+	private final double throttleRate;
+	private final double errorRate;
+
+	/**
+	 * @param latencyMillis
+	 * @param jitterMillis
+	 * @param throttleRate
+	 * @param errorRate
+	 *
+	 *                      Every call takes latencyMillis plus up to jitterMillis.
+	 *                      The given share of the calls fail with status 429 and
+	 *                      500 respectively.
+	 */
+	FaultInjection(long latencyMillis, long jitterMillis, double throttleRate, double errorRate) {
+		this.latencyMillis = latencyMillis;
+		this.jitterMillis = jitterMillis;
+		this.throttleRate = throttleRate;
+		this.errorRate = errorRate;
+	}
+
+	/**
+	 * @param settings
+	 * @param service
+	 * @return FaultInjection Returns the faults set for the service, e.g.
+	 *         streaming.latencyMillis=5 streaming.errorRate=0.01.
+	 */
+	static FaultInjection of(LoadDriver.Settings settings, String service) {
+
+		return new FaultInjection(settings.longValue(service + ".latencyMillis", 0),
+				settings.longValue(service + ".jitterMillis", 0), settings.doubleValue(service + ".throttleRate", 0),
+				settings.doubleValue(service + ".errorRate", 0));
+	}
+
+	/**
+	 * @param operation
+	 *
+	 *                  This method delays the call and fails it if its turn has
+	 *                  come.
+	 */
+	void apply(String operation) {
+
+		ThreadLocalRandom random = ThreadLocalRandom.current();
+		long delayMillis = latencyMillis + (jitterMillis > 0 ? random.nextLong(jitterMillis + 1) : 0);
+
+		if (delayMillis > 0) {
+			try {
+				Thread.sleep(delayMillis);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new BmcException(false, operation + " interrupted.", e, null);
+			}
+		}
+
+		double draw = random.nextDouble();
+		if (draw < throttleRate) {
+			throw new BmcException(429, "TooManyRequests", operation + " throttled by the local stand-in.", null);
+		}
+		if (draw < throttleRate + errorRate) {
+			throw new BmcException(500, "InternalServerError", operation + " failed in the local stand-in.", null);
+		}
+	}
+
+}
@@ -0,0 +1,636 @@
+// Copyright (c)  2022,  Oracle and/or its affiliates.
+// Licensed under the Universal Permissive License v 1.0 as shown at https://oss.oracle.com/licenses/upl.
+
+//An in-memory Streaming service for load tests. Streams have partitions with offsets starting at 0,
+//messages with a key go to the partition of the key, and cursors are positions in a partition that
+//expire after a while, 5 minutes as with the service unless set otherwise.
+//Consumer groups keep a committed offset per partition and share the partitions evenly among their
+//instances, a reservation expires when the instance does not commit within its timeout.
+//The admin and message calls go through the fault injection of the service.
+
+package com.example.fn;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.oracle.bmc.model.BmcException;
+import com.oracle.bmc.streaming.model.CreateCursorDetails;
+import com.oracle.bmc.streaming.model.CreateGroupCursorDetails;
+import com.oracle.bmc.streaming.model.Cursor;
+import com.oracle.bmc.streaming.model.Message;
+import com.oracle.bmc.streaming.model.PutMessagesDetailsEntry;
+import com.oracle.bmc.streaming.model.PutMessagesResult;
+import com.oracle.bmc.streaming.model.PutMessagesResultEntry;
+import com.oracle.bmc.streaming.model.Stream;
+import com.oracle.bmc.streaming.model.StreamSummary;
+import com.oracle.bmc.streaming.requests.ConsumerCommitRequest;
+import com.oracle.bmc.streaming.requests.CreateCursorRequest;
+import com.oracle.bmc.streaming.requests.CreateGroupCursorRequest;
+import com.oracle.bmc.streaming.requests.GetMessagesRequest;
+import com.oracle.bmc.streaming.requests.GetStreamRequest;
+import com.oracle.bmc.streaming.requests.ListStreamsRequest;
+import com.oracle.bmc.streaming.requests.PutMessagesRequest;
+import com.oracle.bmc.streaming.responses.ConsumerCommitResponse;
+import com.oracle.bmc.streaming.responses.CreateCursorResponse;
+import com.oracle.bmc.streaming.responses.CreateGroupCursorResponse;
+import com.oracle.bmc.streaming.responses.GetMessagesResponse;
+import com.oracle.bmc.streaming.responses.GetStreamResponse;
+import com.oracle.bmc.streaming.responses.ListStreamsResponse;
+import com.oracle.bmc.streaming.responses.PutMessagesResponse;
+
+final class LocalStreaming implements StreamAdminApi {
+
+	static final String MESSAGES_ENDPOINT = "http://localhost/streaming";
+	// GetMessages returns up to 10000 messages, as the service does
+	private static final int MAX_GET_LIMIT = 10000;
+	// reservation timeout of a group instance that sets none, as with the service
+	private static final int DEFAULT_GROUP_TIMEOUT_MILLIS = 30000;
+	private static final String PARTITION_CURSOR = "partition";
+	private static final String GROUP_CURSOR = "group";
+
+	private final FaultInjection faults;
+	private final long cursorTtlMillis;
+	private final ConcurrentMap<String, LocalStream> streams = new ConcurrentHashMap<>();
+	// the consumer groups by stream OCID and group name
+	private final ConcurrentMap<String, ConsumerGroup> groups = new ConcurrentHashMap<>();
+	private final StreamApi streamClient = new LocalStreamClient();
+
+	LocalStreaming(FaultInjection faults) {
+		this(faults, TimeUnit.MINUTES.toMillis(5));
+	}
+
+	/**
+	 * @param faults
+	 * @param cursorTtlMillis
+	 *
+	 *                        A cursor is rejected with status 400 once it is
+	 *                        older than cursorTtlMillis.
+	 */
+	LocalStreaming(FaultInjection faults, long cursorTtlMillis) {
+		this.faults = faults;
+		this.cursorTtlMillis = cursorTtlMillis;
+	}
+
+	/**
+	 * @param streamOCID
+	 * @param partitions
+	 *
+	 *                   This method creates an empty stream, if it does not exist
+	 *                   yet.
+	 */
+	void createStream(String streamOCID, int partitions) {
+		streams.computeIfAbsent(streamOCID, ocid -> new LocalStream(ocid, partitions));
+	}
+
+	/**
+	 * @param streamOCID
+	 * @param key
+	 * @param value
+	 *
+	 *                   This method writes a message to the stream without any
+	 *                   fault, to prepare a load test.
+	 */
+	void append(String streamOCID, byte[] key, byte[] value) {
+		stream(streamOCID).append(key, value);
+	}
+
+	/**
+	 * @param streamOCID
+	 * @return long Returns the no. of messages in all the partitions of the
+	 *         stream.
+	 */
+	long messageCount(String streamOCID) {
+
+		long count = 0;
+		for (Partition partition : stream(streamOCID).partitions) {
+			count += partition.size();
+		}
+		return count;
+	}
+
+	/**
+	 * @return Map Returns the no. of messages of every stream, by stream OCID.
+	 */
+	Map<String, Long> messageCounts() {
+
+		Map<String, Long> counts = new TreeMap<>();
+		streams.keySet().forEach(streamOCID -> counts.put(streamOCID, messageCount(streamOCID)));
+		return counts;
+	}
+
+	/**
+	 * @param streamOCID
+	 * @param groupName
+	 * @return long Returns the no. of messages of the stream not yet committed
+	 *         by the consumer group, all of them if the group does not exist.
+	 */
+	long groupLag(String streamOCID, String groupName) {
+
+		ConsumerGroup group = groups.get(groupKey(streamOCID, groupName));
+		if (group == null) {
+			return messageCount(streamOCID);
+		}
+
+		long lag = 0;
+		for (int i = 0; i < group.stream.partitions.size(); i++) {
+			lag += group.stream.partitions.get(i).size() - group.committedOffset(i);
+		}
+		return lag;
+	}
+
+	/**
+	 * @return StreamApi Returns the message calls, for all the streams.
+	 */
+	StreamApi streamClient() {
+		return streamClient;
+	}
+
+	@Override
+	public GetStreamResponse getStream(GetStreamRequest request) {
+
+		faults.apply("GetStream");
+		LocalStream stream = stream(request.getStreamId());
+
+		return GetStreamResponse.builder().stream(Stream.builder().id(stream.streamOCID).name(stream.streamOCID)
+				.partitions(stream.partitions.size()).messagesEndpoint(MESSAGES_ENDPOINT).build()).build();
+	}
+
+	@Override
+	public ListStreamsResponse listStreams(ListStreamsRequest request) {
+
+		faults.apply("ListStreams");
+		List<StreamSummary> items = new ArrayList<>();
+
+		for (LocalStream stream : streams.values()) {
+			if (request.getId() == null || request.getId().equals(stream.streamOCID)) {
+				items.add(StreamSummary.builder().id(stream.streamOCID).name(stream.streamOCID)
+						.partitions(stream.partitions.size()).messagesEndpoint(MESSAGES_ENDPOINT).build());
+			}
+		}
+
+		return ListStreamsResponse.builder().items(items).build();
+	}
+
+	private static String groupKey(String streamOCID, String groupName) {
+		return streamOCID + "\n" + groupName;
+	}
+
+	private LocalStream stream(String streamOCID) {
+
+		LocalStream stream = streamOCID == null ? null : streams.get(streamOCID);
+		if (stream == null) {
+			throw new BmcException(404, "NotAuthorizedOrNotFound", "Stream " + streamOCID + " not found.", null);
+		}
+		return stream;
+	}
+
+	// The message calls, a cursor holds the stream, the partition and the offset
+	// of the next message
+	private final class LocalStreamClient implements StreamApi {
+
+		@Override
+		public CreateCursorResponse createCursor(CreateCursorRequest request) {
+
+			faults.apply("CreateCursor");
+			LocalStream stream = stream(request.getStreamId());
+			CreateCursorDetails details = request.getCreateCursorDetails();
+			Partition partition = stream.partition(details.getPartition());
+
+			long offset;
+			switch (details.getType()) {
+			case AtOffset:
+				offset = details.getOffset();
+				break;
+			case AfterOffset:
+				offset = details.getOffset() + 1;
+				break;
+			case Latest:
+				offset = partition.size();
+				break;
+			case AtTime:
+				offset = partition.offsetAt(details.getTime());
+				break;
+			default:
+				offset = 0;
+			}
+
+			return CreateCursorResponse.builder()
+					.cursor(Cursor.builder().value(cursor(stream.streamOCID, details.getPartition(), offset)).build())
+					.build();
+		}
+
+		@Override
+		public GetMessagesResponse getMessages(GetMessagesRequest request) {
+
+			faults.apply("GetMessages");
+			String[] position = fields(request.getCursor());
+			LocalStream stream = stream(request.getStreamId());
+
+			if (GROUP_CURSOR.equals(position[0])) {
+				return getGroupMessages(stream, Arrays.copyOfRange(position, 1, position.length), request.getLimit());
+			}
+
+			// a partition cursor holds the stream, the partition, the offset and the
+			// expiry time
+			if (!stream.streamOCID.equals(position[1])) {
+				throw new BmcException(400, "InvalidParameter", "The cursor is not a cursor of the stream.", null);
+			}
+			if (System.currentTimeMillis() > Long.parseLong(position[4])) {
+				throw new BmcException(400, "InvalidParameter", "The cursor has expired.", null);
+			}
+
+			long offset = Long.parseLong(position[3]);
+			int limit = request.getLimit() == null ? MAX_GET_LIMIT : Math.min(request.getLimit(), MAX_GET_LIMIT);
+			List<Message> items = stream.partition(position[2]).read(offset, limit);
+
+			return GetMessagesResponse.builder().items(items)
+					.opcNextCursor(cursor(stream.streamOCID, position[2], offset + items.size())).build();
+		}
+
+		@Override
+		public PutMessagesResponse putMessages(PutMessagesRequest request) {
+
+			faults.apply("PutMessages");
+			LocalStream stream = stream(request.getStreamId());
+			List<PutMessagesResultEntry> entries = new ArrayList<>();
+
+			for (PutMessagesDetailsEntry entry : request.getPutMessagesDetails().getMessages()) {
+				entries.add(stream.append(entry.getKey(), entry.getValue()));
+			}
+
+			return PutMessagesResponse.builder()
+					.putMessagesResult(PutMessagesResult.builder().failures(0).entries(entries).build()).build();
+		}
+
+		@Override
+		public CreateGroupCursorResponse createGroupCursor(CreateGroupCursorRequest request) {
+
+			faults.apply("CreateGroupCursor");
+			LocalStream stream = stream(request.getStreamId());
+			CreateGroupCursorDetails details = request.getCreateGroupCursorDetails();
+
+			ConsumerGroup group = groups.computeIfAbsent(groupKey(stream.streamOCID, details.getGroupName()),
+					key -> new ConsumerGroup(stream, details));
+			String instanceName = details.getInstanceName() != null ? details.getInstanceName()
+					: UUID.randomUUID().toString();
+			group.join(instanceName, details.getTimeoutInMs() != null ? details.getTimeoutInMs()
+					: DEFAULT_GROUP_TIMEOUT_MILLIS, details.getCommitOnGet() == null || details.getCommitOnGet());
+
+			return CreateGroupCursorResponse.builder().cursor(Cursor.builder()
+					.value(groupCursor(stream.streamOCID, details.getGroupName(), instanceName, Map.of())).build())
+					.build();
+		}
+
+		@Override
+		public ConsumerCommitResponse consumerCommit(ConsumerCommitRequest request) {
+
+			faults.apply("ConsumerCommit");
+			String[] fields = fields(request.getCursor());
+			LocalStream stream = stream(request.getStreamId());
+
+			if (!GROUP_CURSOR.equals(fields[0]) || !stream.streamOCID.equals(fields[1])) {
+				throw new BmcException(400, "InvalidParameter", "The cursor is not a group cursor of the stream.",
+						null);
+			}
+			String[] position = Arrays.copyOfRange(fields, 1, fields.length);
+
+			Map<Integer, Long> committed = group(stream, position[1]).commit(position[2], positions(position[3]));
+
+			return ConsumerCommitResponse.builder()
+					.cursor(Cursor.builder().value(groupCursor(stream.streamOCID, position[1], position[2], committed))
+							.build())
+					.build();
+		}
+
+		@Override
+		public void close() {
+			// the streams outlive the clients
+		}
+
+		/**
+		 * @param stream
+		 * @param position
+		 * @param limit
+		 * @return GetMessagesResponse Returns the messages of the partitions
+		 *         reserved by the instance, from the positions of the cursor or
+		 *         else the committed offsets.
+		 */
+		private GetMessagesResponse getGroupMessages(LocalStream stream, String[] position, Integer limit) {
+
+			if (!stream.streamOCID.equals(position[0])) {
+				throw new BmcException(400, "InvalidParameter", "The cursor is not a cursor of the stream.", null);
+			}
+
+			ConsumerGroup group = group(stream, position[1]);
+			Map<Integer, Long> read = group.read(position[2], positions(position[3]));
+
+			int remaining = limit == null ? MAX_GET_LIMIT : Math.min(limit, MAX_GET_LIMIT);
+			List<Message> items = new ArrayList<>();
+
+			for (Map.Entry<Integer, Long> partition : read.entrySet()) {
+				List<Message> messages = stream.partitions.get(partition.getKey()).read(partition.getValue(),
+						remaining);
+				items.addAll(messages);
+				remaining -= messages.size();
+				partition.setValue(partition.getValue() + messages.size());
+			}
+
+			group.readDone(position[2], read);
+
+			return GetMessagesResponse.builder().items(items)
+					.opcNextCursor(groupCursor(stream.streamOCID, position[1], position[2], read)).build();
+		}
+
+		private ConsumerGroup group(LocalStream stream, String groupName) {
+
+			ConsumerGroup group = groups.get(groupKey(stream.streamOCID, groupName));
+			if (group == null) {
+				throw new BmcException(404, "NotAuthorizedOrNotFound", "Group " + groupName + " not found.", null);
+			}
+			return group;
+		}
+
+		// a group cursor holds the stream, the group, the instance and the next
+		// offset of the partitions it has read
+		private String groupCursor(String streamOCID, String groupName, String instanceName,
+				Map<Integer, Long> offsets) {
+
+			StringBuilder cursor = new StringBuilder(GROUP_CURSOR).append('\n').append(streamOCID).append('\n')
+					.append(groupName).append('\n').append(instanceName).append('\n');
+			offsets.forEach((partition, offset) -> {
+				if (cursor.charAt(cursor.length() - 1) != '\n') {
+					cursor.append(',');
+				}
+				cursor.append(partition).append('=').append(offset);
+			});
+			return Base64.getUrlEncoder().encodeToString(cursor.toString().getBytes(UTF_8));
+		}
+
+		private Map<Integer, Long> positions(String offsets) {
+
+			Map<Integer, Long> positions = new TreeMap<>();
+			if (!offsets.isEmpty()) {
+				for (String offset : offsets.split(",")) {
+					String[] partitionOffset = offset.split("=");
+					positions.put(Integer.valueOf(partitionOffset[0]), Long.valueOf(partitionOffset[1]));
+				}
+			}
+			return positions;
+		}
+
+		private String cursor(String streamOCID, String partition, long offset) {
+
+			String cursor = PARTITION_CURSOR + "\n" + streamOCID + "\n" + partition + "\n" + offset + "\n"
+					+ (System.currentTimeMillis() + cursorTtlMillis);
+			return Base64.getUrlEncoder().encodeToString(cursor.getBytes(UTF_8));
+		}
+
+		/**
+		 * @param cursor
+		 * @return String[] Returns the fields of a cursor, the kind of the cursor
+		 *         first.
+		 */
+		private String[] fields(String cursor) {
+
+			String[] fields;
+			try {
+				fields = new String(Base64.getUrlDecoder().decode(cursor), UTF_8).split("\n", -1);
+			} catch (IllegalArgumentException e) {
+				fields = new String[0];
+			}
+
+			if (fields.length == 5 && (PARTITION_CURSOR.equals(fields[0]) || GROUP_CURSOR.equals(fields[0]))) {
+				return fields;
+			}
+			throw new BmcException(400, "InvalidParameter", "The cursor is not valid.", null);
+		}
+	}
+
+	private static final class LocalStream {
+
+		private final String streamOCID;
+		private final List<Partition> partitions;
+		// partition of the next message without a key
+		private final AtomicInteger nextPartition = new AtomicInteger();
+
+		LocalStream(String streamOCID, int partitions) {
+
+			this.streamOCID = streamOCID;
+			List<Partition> created = new ArrayList<>();
+			for (int i = 0; i < Math.max(1, partitions); i++) {
+				created.add(new Partition(streamOCID, String.valueOf(i)));
+			}
+			this.partitions = Collections.unmodifiableList(created);
+		}
+
+		Partition partition(String partition) {
+			try {
+				return partitions.get(Integer.parseInt(partition));
+			} catch (NumberFormatException | IndexOutOfBoundsException e) {
+				throw new BmcException(400, "InvalidParameter", "Partition " + partition + " not found.", null);
+			}
+		}
+
+		PutMessagesResultEntry append(byte[] key, byte[] value) {
+
+			int index = key == null ? Math.floorMod(nextPartition.getAndIncrement(), partitions.size())
+					: Math.floorMod(Arrays.hashCode(key), partitions.size());
+			return partitions.get(index).append(key, value);
+		}
+	}
+
+	// The committed offsets of a consumer group and the partitions reserved by
+	// its instances
+	private static final class ConsumerGroup {
+
+		private final LocalStream stream;
+		// next offset to read of every partition
+		private final long[] committed;
+		private final String[] reservedBy;
+		// reservation time limits, on the System.nanoTime() scale
+		private final long[] reservedUntil;
+		private final Map<String, Instance> instances = new HashMap<>();
+
+		ConsumerGroup(LocalStream stream, CreateGroupCursorDetails details) {
+
+			this.stream = stream;
+			int partitions = stream.partitions.size();
+			committed = new long[partitions];
+			reservedBy = new String[partitions];
+			reservedUntil = new long[partitions];
+
+			// the type of the cursor sets where a new group starts
+			for (int i = 0; i < partitions; i++) {
+				Partition partition = stream.partitions.get(i);
+				if (details.getType() == CreateGroupCursorDetails.Type.Latest) {
+					committed[i] = partition.size();
+				} else if (details.getType() == CreateGroupCursorDetails.Type.AtTime) {
+					committed[i] = partition.offsetAt(details.getTime());
+				}
+			}
+		}
+
+		synchronized long committedOffset(int partition) {
+			return committed[partition];
+		}
+
+		synchronized void join(String instanceName, int timeoutMillis, boolean commitOnGet) {
+			instances.put(instanceName,
+					new Instance(TimeUnit.MILLISECONDS.toNanos(timeoutMillis), commitOnGet, System.nanoTime()));
+		}
+
+		/**
+		 * @param instanceName
+		 * @param cursorOffsets
+		 * @return Map Returns the partitions reserved by the instance with the
+		 *         offset to read from. The instance first gets its share of the
+		 *         partitions, an even share among the instances seen within their
+		 *         timeout.
+		 */
+		synchronized Map<Integer, Long> read(String instanceName, Map<Integer, Long> cursorOffsets) {
+
+			Instance instance = instances.get(instanceName);
+			if (instance == null) {
+				throw new BmcException(400, "InvalidParameter", "Instance " + instanceName + " did not join.", null);
+			}
+
+			long now = System.nanoTime();
+			instance.lastSeen = now;
+			instances.values().removeIf(other -> now - other.lastSeen - other.timeoutNanos > 0);
+
+			int share = (committed.length + instances.size() - 1) / instances.size();
+			List<Integer> reserved = new ArrayList<>();
+
+			for (int i = 0; i < committed.length; i++) {
+				if (reservedBy[i] != null && now - reservedUntil[i] > 0) {
+					reservedBy[i] = null;
+				}
+				if (instanceName.equals(reservedBy[i])) {
+					reserved.add(i);
+				}
+			}
+
+			// give up the partitions above the share, so that new instances get theirs
+			while (reserved.size() > share) {
+				reservedBy[reserved.remove(reserved.size() - 1)] = null;
+			}
+			for (int i = 0; i < committed.length && reserved.size() < share; i++) {
+				if (reservedBy[i] == null) {
+					reservedBy[i] = instanceName;
+					reservedUntil[i] = now + instance.timeoutNanos;
+					reserved.add(i);
+				}
+			}
+
+			Map<Integer, Long> offsets = new TreeMap<>();
+			for (int partition : reserved) {
+				offsets.put(partition, cursorOffsets.getOrDefault(partition, committed[partition]));
+			}
+			return offsets;
+		}
+
+		synchronized void readDone(String instanceName, Map<Integer, Long> nextOffsets) {
+
+			if (instances.get(instanceName).commitOnGet) {
+				commit(instanceName, nextOffsets);
+			}
+		}
+
+		/**
+		 * @param instanceName
+		 * @param nextOffsets
+		 * @return Map Returns the offsets committed. Only the partitions still
+		 *         reserved by the instance are committed, their reservations are
+		 *         extended.
+		 */
+		synchronized Map<Integer, Long> commit(String instanceName, Map<Integer, Long> nextOffsets) {
+
+			Instance instance = instances.get(instanceName);
+			long now = System.nanoTime();
+			Map<Integer, Long> offsets = new TreeMap<>();
+
+			nextOffsets.forEach((partition, offset) -> {
+				if (instance != null && instanceName.equals(reservedBy[partition])
+						&& now - reservedUntil[partition] <= 0) {
+					committed[partition] = offset;
+					reservedUntil[partition] = now + instance.timeoutNanos;
+					offsets.put(partition, offset);
+				}
+			});
+			if (instance != null) {
+				instance.lastSeen = now;
+			}
+			return offsets;
+		}
+
+		private static final class Instance {
+
+			private final long timeoutNanos;
+			private final boolean commitOnGet;
+			private long lastSeen;
+
+			Instance(long timeoutNanos, boolean commitOnGet, long lastSeen) {
+				this.timeoutNanos = timeoutNanos;
+				this.commitOnGet = commitOnGet;
+				this.lastSeen = lastSeen;
+			}
+		}
+	}
+
+	private static final class Partition {
+
+		private final String streamOCID;
+		private final String partition;
+		private final List<Message> messages = new ArrayList<>();
+
+		Partition(String streamOCID, String partition) {
+			this.streamOCID = streamOCID;
+			this.partition = partition;
+		}
+
+		synchronized PutMessagesResultEntry append(byte[] key, byte[] value) {
+
+			long offset = messages.size();
+			Date timestamp = new Date();
+			messages.add(Message.builder().stream(streamOCID).partition(partition).key(key).value(value)
+					.offset(offset).timestamp(timestamp).build());
+
+			return PutMessagesResultEntry.builder().partition(partition).offset(offset).timestamp(timestamp).build();
+		}
+
+		synchronized List<Message> read(long offset, int limit) {
+
+			int from = (int) Math.min(Math.max(0, offset), messages.size());
+			return new ArrayList<>(messages.subList(from, Math.min(messages.size(), from + limit)));
+		}
+
+		synchronized int size() {
+			return messages.size();
+		}
+
+		synchronized long offsetAt(Date time) {
+
+			for (Message message : messages) {
+				if (!message.getTimestamp().before(time)) {
+					return message.getOffset();
+				}
+			}
+			return messages.size();
+		}
+	}
+
+}
@@ -0,0 +1,120 @@
+// Copyright (c)  2022,  Oracle and/or its affiliates.
+// Licensed under the Universal Permissive License v 1.0 as shown at https://oss.oracle.com/licenses/upl.
+
+//A local target application for load tests. It answers every call after the configured latency,
+//with a status drawn from the configured mix, e.g. target.statusMix=200=95,503=4,500=1.
+
+package com.example.fn;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+final class LocalTarget implements AutoCloseable {
+
+	private final HttpServer server;
+	private final ExecutorService executor;
+	private final long latencyMillis;
+	private final long jitterMillis;
+	// the statuses and their cumulative weights
+	private final int[] statuses;
+	private final int[] weights;
+	private final ConcurrentMap<Integer, LongAdder> responses = new ConcurrentHashMap<>();
+
+	/**
+	 * @param settings
+	 * @throws IOException
+	 *
+	 *                     This starts the target on a free port of the loopback
+	 *                     interface.
+	 */
+	LocalTarget(LoadDriver.Settings settings) throws IOException {
+
+		this.latencyMillis = settings.longValue("target.latencyMillis", 0);
+		this.jitterMillis = settings.longValue("target.jitterMillis", 0);
+
+		String[] mix = settings.stringValue("target.statusMix", "200=100").split(",");
+		statuses = new int[mix.length];
+		weights = new int[mix.length];
+		int total = 0;
+		for (int i = 0; i < mix.length; i++) {
+			String[] statusWeight = mix[i].trim().split("=");
+			statuses[i] = Integer.parseInt(statusWeight[0].trim());
+			total += statusWeight.length > 1 ? Integer.parseInt(statusWeight[1].trim()) : 1;
+			weights[i] = total;
+		}
+
+		executor = Executors.newFixedThreadPool(settings.intValue("target.threads", 200));
+		server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+		server.setExecutor(executor);
+		server.createContext("/", this::respond);
+		server.start();
+	}
+
+	/**
+	 * @param path
+	 * @return URI Returns the URI of the path on the target.
+	 */
+	URI uri(String path) {
+		return URI.create("http://127.0.0.1:" + server.getAddress().getPort() + path);
+	}
+
+	/**
+	 * @return Map Returns the no. of responses sent, by status.
+	 */
+	Map<Integer, Long> responseCounts() {
+
+		Map<Integer, Long> counts = new TreeMap<>();
+		responses.forEach((status, count) -> counts.put(status, count.sum()));
+		return counts;
+	}
+
+	@Override
+	public void close() {
+		server.stop(0);
+		executor.shutdownNow();
+	}
+
+	private void respond(HttpExchange exchange) throws IOException {
+
+		try (InputStream body = exchange.getRequestBody()) {
+			body.readAllBytes();
+
+			ThreadLocalRandom random = ThreadLocalRandom.current();
+			long delayMillis = latencyMillis + (jitterMillis > 0 ? random.nextLong(jitterMillis + 1) : 0);
+			if (delayMillis > 0) {
+				Thread.sleep(delayMillis);
+			}
+
+			int draw = random.nextInt(weights[weights.length - 1]);
+			int status = statuses[statuses.length - 1];
+			for (int i = 0; i < weights.length; i++) {
+				if (draw < weights[i]) {
+					status = statuses[i];
+					break;
+				}
+			}
+
+			responses.computeIfAbsent(status, key -> new LongAdder()).increment();
+			exchange.sendResponseHeaders(status, -1);
+
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} finally {
+			exchange.close();
+		}
+	}
+
+}
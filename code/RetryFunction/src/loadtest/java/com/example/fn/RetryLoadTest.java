@@ -0,0 +1,218 @@
+// Copyright (c)  2022,  Oracle and/or its affiliates.
+// Licensed under the Universal Permissive License v 1.0 as shown at https://oss.oracle.com/licenses/upl.
+
+//Load test of RetryFunction without OCI. A local stream to retry is filled with messages for the local
+//target, and every partition of it is read by a caller of its own, one page per invocation, until the
+//end of the partition, passing the continuation token of the last response. With consumerGroup set the callers are instances of a consumer group instead,
+//which share the partitions until the group has committed all the messages.
+//The arguments are key=value pairs, see the Load tests section of the README.
+
+package com.example.fn;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.util.Arrays;
+import java.util.Map;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+
+public final class RetryLoadTest {
+
+	private static final ObjectReader JSON_READER = new ObjectMapper().reader();
+	private static final String VAULT_SECRET_NAME = "local-target-token";
+
+	private RetryLoadTest() {
+	}
+
+	public static void main(String[] args) throws Exception {
+
+		LoadDriver.Settings settings = new LoadDriver.Settings(args);
+		LoadDriver.configureLogging(settings);
+
+		int messages = settings.intValue("messages", 10000);
+		int warmupMessages = settings.intValue("warmupMessages", 1000);
+		int partitions = settings.intValue("partitions", 4);
+		int pageSize = settings.intValue("noOfMessagesToProcess", 100);
+		int keys = settings.intValue("keys", 16);
+		boolean drain = Boolean.parseBoolean(settings.stringValue("drain", "false"));
+		int maxFailures = settings.intValue("maxFailures", 3);
+		int concurrency = settings.intValue("concurrency", partitions);
+		String consumerGroup = settings.stringValue("consumerGroup", "");
+		boolean continuationToken = Boolean.parseBoolean(settings.stringValue("continuationToken", "true"));
+
+		LocalStreaming streaming = new LocalStreaming(FaultInjection.of(settings, "streaming"),
+				settings.longValue("streaming.cursorTtlMillis", 300000));
+		LocalVault vault = new LocalVault(FaultInjection.of(settings, "vault"));
+		String defaultErrorStreamOCID = requiredVariable("default_error_stream_ocid");
+		streaming.createStream(defaultErrorStreamOCID, 1);
+		vault.putSecret(VAULT_SECRET_NAME, "Bearer local-token");
+		LocalOciClients.install(streaming, vault);
+
+		try (LocalTarget target = new LocalTarget(settings)) {
+
+			RetryFunction function = new RetryFunction();
+
+			String warmupStreamOCID = "ocid1.stream.oc1.local.retrywarmup";
+			fillStream(streaming, target, warmupStreamOCID, partitions, warmupMessages, keys);
+			LoadDriver.run(Integer.MAX_VALUE, consumerGroup.isEmpty() ? partitions : concurrency,
+					consumerGroup.isEmpty()
+							? partitionReader(function, warmupStreamOCID, partitions, pageSize, drain, maxFailures,
+										continuationToken)
+							: groupReader(function, streaming, warmupStreamOCID, consumerGroup, concurrency, pageSize,
+									drain, maxFailures));
+
+			String streamOCID = "ocid1.stream.oc1.local.retry";
+			fillStream(streaming, target, streamOCID, partitions, messages, keys);
+			LoadDriver.Report report = LoadDriver.run(Integer.MAX_VALUE,
+					consumerGroup.isEmpty() ? partitions : concurrency,
+					consumerGroup.isEmpty()
+							? partitionReader(function, streamOCID, partitions, pageSize, drain, maxFailures,
+										continuationToken)
+							: groupReader(function, streaming, streamOCID, consumerGroup, concurrency, pageSize,
+									drain, maxFailures));
+
+			System.out.println(report.format("RetryFunction"));
+			System.out.println("  target responses by status: " + target.responseCounts());
+			System.out.println("  default error stream messages: " + streaming.messageCount(defaultErrorStreamOCID));
+			if (!consumerGroup.isEmpty()) {
+				System.out.println("  messages not committed by the group: "
+						+ streaming.groupLag(streamOCID, consumerGroup));
+			}
+		}
+
+	}
+
+	/**
+	 * @param function
+	 * @param streamOCID
+	 * @param partitions
+	 * @param pageSize
+	 * @param drain
+	 * @param maxFailures
+	 * @param continuationToken
+	 * @return LoadDriver.Invocation Returns the invocation of a caller, which
+	 *         retries the partition of the caller from where its last invocation
+	 *         stopped, given by the continuation token of the last response or
+	 *         by its last read offset. A failed page is tried again, the caller
+	 *         stops after maxFailures failures of the same page.
+	 */
+	private static LoadDriver.Invocation partitionReader(RetryFunction function, String streamOCID, int partitions,
+			int pageSize, boolean drain, int maxFailures, boolean continuationToken) {
+
+		long[] readAfterOffsets = new long[partitions];
+		String[] tokens = new String[partitions];
+		boolean[] endOfStream = new boolean[partitions];
+		int[] failures = new int[partitions];
+		Arrays.fill(readAfterOffsets, -1);
+
+		return caller -> {
+			if (endOfStream[caller] || failures[caller] >= maxFailures) {
+				return -1;
+			}
+
+			String position = tokens[caller] != null ? "\"continuationToken\":\"" + tokens[caller] + "\""
+					: "\"readAfterOffset\":" + readAfterOffsets[caller] + ",\"readPartition\":\"" + caller + "\"";
+			String requestBody = "{\"streamOCIDToRetry\":\"" + streamOCID + "\"," + position
+					+ ",\"noOfMessagesToProcess\":" + pageSize + ",\"drain\":" + drain + ",\"errormapping\":[]}";
+			LocalInvocation call = new LocalInvocation(Map.of(), requestBody.getBytes(UTF_8));
+			String response = function.handleRequest(requestBody, call.gatewayContext());
+
+			if (call.getStatusCode() != 200 || !response.startsWith("{") || response.contains("\"error\"")) {
+				failures[caller]++;
+				throw new IllegalStateException("Retry of partition " + caller + " failed. " + response);
+			}
+
+			JsonNode result = JSON_READER.readTree(response);
+			failures[caller] = 0;
+			endOfStream[caller] = result.path("endOfStream").asBoolean(false);
+			if (result.has("lastReadOffset")) {
+				readAfterOffsets[caller] = result.path("lastReadOffset").asLong();
+			}
+			if (continuationToken && result.has("continuationToken")) {
+				tokens[caller] = result.path("continuationToken").asText();
+			}
+			return result.path("processedmessages").asInt() + result.path("failedMessages").asInt();
+		};
+	}
+
+	/**
+	 * @param function
+	 * @param streaming
+	 * @param streamOCID
+	 * @param consumerGroup
+	 * @param instances
+	 * @param pageSize
+	 * @param drain
+	 * @param maxFailures
+	 * @return LoadDriver.Invocation Returns the invocation of a caller, which
+	 *         retries the partitions the consumer group gives to the instance of
+	 *         the caller. An instance without messages is idle until the group
+	 *         gives it partitions. The callers stop once the group has committed
+	 *         all the messages, or after maxFailures failures in a row.
+	 */
+	private static LoadDriver.Invocation groupReader(RetryFunction function, LocalStreaming streaming,
+			String streamOCID, String consumerGroup, int instances, int pageSize, boolean drain, int maxFailures) {
+
+		int[] failures = new int[instances];
+
+		return caller -> {
+			if (failures[caller] >= maxFailures || streaming.groupLag(streamOCID, consumerGroup) == 0) {
+				return -1;
+			}
+
+			String requestBody = "{\"streamOCIDToRetry\":\"" + streamOCID + "\",\"consumerGroup\":\"" + consumerGroup
+					+ "\",\"consumerInstance\":\"loadtest-" + caller + "\",\"noOfMessagesToProcess\":" + pageSize
+					+ ",\"drain\":" + drain + ",\"errormapping\":[]}";
+			LocalInvocation call = new LocalInvocation(Map.of(), requestBody.getBytes(UTF_8));
+			String response = function.handleRequest(requestBody, call.gatewayContext());
+
+			if (call.getStatusCode() != 200 || !response.startsWith("{") || response.contains("\"error\"")) {
+				failures[caller]++;
+				throw new IllegalStateException("Retry of group instance " + caller + " failed. " + response);
+			}
+
+			JsonNode result = JSON_READER.readTree(response);
+			failures[caller] = 0;
+			int handled = result.path("processedmessages").asInt() + result.path("failedMessages").asInt();
+			// the partitions of the group are taken by the other instances
+			return handled == 0 ? LoadDriver.IDLE : handled;
+		};
+	}
+
+	/**
+	 * @param streaming
+	 * @param target
+	 * @param streamOCID
+	 * @param partitions
+	 * @param messages
+	 * @param keys
+	 *
+	 *                   This method creates the stream and writes the messages to
+	 *                   retry to it, on keys distinct stream keys.
+	 */
+	private static void fillStream(LocalStreaming streaming, LocalTarget target, String streamOCID, int partitions,
+			int messages, int keys) {
+
+		streaming.createStream(streamOCID, partitions);
+
+		for (int i = 0; i < messages; i++) {
+			String message = "{\"vaultSecretName\":\"" + VAULT_SECRET_NAME + "\",\"targetRestApi\":\""
+					+ target.uri("/orders/" + i) + "\",\"targetRestApiOperation\":\"PUT\","
+					+ "\"targetRestApiPayload\":{\"orderId\":" + i + ",\"status\":\"SHIPPED\"},"
+					+ "\"targetRestApiHeaders\":[{\"key\":\"Content-Type\",\"value\":\"application/json\"}]}";
+			streaming.append(streamOCID, ("order-" + i % Math.max(1, keys)).getBytes(UTF_8), message.getBytes(UTF_8));
+		}
+	}
+
+	private static String requiredVariable(String name) {
+
+		String value = System.getenv(name);
+		if (value == null || value.isBlank()) {
+			throw new IllegalStateException("Set the environment variable " + name + ".");
+		}
+		return value;
+	}
+
+}
@@ -0,0 +1,101 @@
+// Copyright (c)  2022,  Oracle and/or its affiliates.
+// Licensed under the Universal Permissive License v 1.0 as shown at https://oss.oracle.com/licenses/upl.
+
+//Reads the messages of a stream as an instance of a Streaming consumer group. The group keeps the committed
+//offset of every partition and shares the partitions among the instances reading it, so that retry calls
+//of several instances resume where the group stopped without the caller passing offsets.
+//Offsets are committed page by page, once the messages of the page are retried.
+
+package com.example.fn;
+
+import java.util.List;
+import java.util.UUID;
+
+import com.oracle.bmc.streaming.model.CreateGroupCursorDetails;
+import com.oracle.bmc.streaming.model.CreateGroupCursorDetails.Type;
+import com.oracle.bmc.streaming.model.Message;
+import com.oracle.bmc.streaming.requests.ConsumerCommitRequest;
+import com.oracle.bmc.streaming.requests.CreateGroupCursorRequest;
+import com.oracle.bmc.streaming.requests.GetMessagesRequest;
+import com.oracle.bmc.streaming.responses.GetMessagesResponse;
+
+class ConsumerGroupCursor {
+
+	// Instance name of the container in a group, the partitions reserved by it
+	// stay with it from one invocation to the next
+	static final String CONTAINER_INSTANCE = "retry-" + UUID.randomUUID();
+	// Time the partitions of an instance stay reserved without a commit
+	private static final int RESERVATION_TIMEOUT_MILLIS = FunctionConfig.intValue("consumer_group_timeout_millis",
+			30000);
+
+	private final StreamApi streamClient;
+	private final String streamOCID;
+	private String cursor;
+	// cursor after the last page read, committed with the page
+	private String nextCursor;
+
+	/**
+	 * @param streamClient
+	 * @param streamOCID
+	 * @param groupName
+	 * @param instanceName
+	 *
+	 *                     This creates the group cursor. A group that does not
+	 *                     exist yet is created and starts at the oldest message of
+	 *                     every partition.
+	 */
+	ConsumerGroupCursor(StreamApi streamClient, String streamOCID, String groupName, String instanceName) {
+		this.streamClient = streamClient;
+		this.streamOCID = streamOCID;
+
+		// offsets are committed only after the messages are retried
+		CreateGroupCursorDetails cursorDetails = CreateGroupCursorDetails.builder().groupName(groupName)
+				.instanceName(instanceName).type(Type.TrimHorizon).commitOnGet(false)
+				.timeoutInMs(RESERVATION_TIMEOUT_MILLIS).build();
+
+		long start = System.nanoTime();
+		this.cursor = streamClient.createGroupCursor(CreateGroupCursorRequest.builder().streamId(streamOCID)
+				.createGroupCursorDetails(cursorDetails).build()).getCursor().getValue();
+		FunctionMetrics.recordLatency("create_group_cursor", start);
+	}
+
+	/**
+	 * @param limit
+	 * @return List Returns the next page of messages of the partitions reserved
+	 *         by the instance, empty if they have no more messages.
+	 *
+	 *         Pages not committed are read again by the group after the
+	 *         reservation timeout.
+	 */
+	List<Message> next(int limit) {
+
+		String pageCursor = nextCursor != null ? nextCursor : cursor;
+
+		long start = System.nanoTime();
+		GetMessagesResponse getResponse = streamClient.getMessages(
+				GetMessagesRequest.builder().streamId(streamOCID).cursor(pageCursor).limit(limit).build());
+		FunctionMetrics.recordLatency("get_messages", start);
+
+		nextCursor = getResponse.getOpcNextCursor();
+		return getResponse.getItems();
+	}
+
+	/**
+	 * This method commits the offsets of the pages read so far and extends the
+	 * reservation of the partitions of the instance.
+	 */
+	void commit() {
+
+		if (nextCursor == null) {
+			return;
+		}
+
+		long start = System.nanoTime();
+		cursor = streamClient
+				.consumerCommit(ConsumerCommitRequest.builder().streamId(streamOCID).cursor(nextCursor).build())
+				.getCursor().getValue();
+		FunctionMetrics.recordLatency("consumer_commit", start);
+		nextCursor = null;
+	}
+
+}
@@ -0,0 +1,87 @@
+// Copyright (c)  2022,  Oracle and/or its affiliates.
+// Licensed under the Universal Permissive License v 1.0 as shown at https://oss.oracle.com/licenses/upl.
+
+//The position in a stream partition where a retry call continues. It is returned to the caller as an
+//opaque token holding the cursor returned by the service, so that the next call reads on without
+//creating a cursor. The offset read last is kept in the token, to create a cursor when the service
+//cursor is missing or has expired.
+
+package com.example.fn;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.util.Base64;
+
+class ContinuationToken {
+
+	private static final String VERSION = "1";
+
+	private final String streamOCID;
+	private final String partition;
+	private final long readAfterOffset;
+	private final String cursor;
+
+	/**
+	 * @param streamOCID
+	 * @param partition
+	 * @param readAfterOffset
+	 * @param cursor
+	 *
+	 *                        readAfterOffset is -1 to read from the oldest
+	 *                        message. The cursor may be null.
+	 */
+	ContinuationToken(String streamOCID, String partition, long readAfterOffset, String cursor) {
+		this.streamOCID = streamOCID;
+		this.partition = partition;
+		this.readAfterOffset = readAfterOffset;
+		this.cursor = cursor;
+	}
+
+	/**
+	 * @param token
+	 * @return ContinuationToken Returns the position held by the token, or null
+	 *         if the token is not valid.
+	 */
+	static ContinuationToken decode(String token) {
+
+		try {
+			String[] fields = new String(Base64.getUrlDecoder().decode(token), UTF_8).split("\n", -1);
+			if (fields.length != 5 || !VERSION.equals(fields[0])) {
+				return null;
+			}
+			return new ContinuationToken(fields[1], fields[2], Long.parseLong(fields[3]),
+					fields[4].isEmpty() ? null : fields[4]);
+
+		} catch (IllegalArgumentException e) {
+			// also thrown for a malformed offset
+			return null;
+		}
+	}
+
+	/**
+	 * @return String Returns the token of the position.
+	 */
+	String encode() {
+
+		String fields = VERSION + "\n" + streamOCID + "\n" + partition + "\n" + readAfterOffset + "\n"
+				+ (cursor != null ? cursor : "");
+		return Base64.getUrlEncoder().withoutPadding().encodeToString(fields.getBytes(UTF_8));
+	}
+
+	String getStreamOCID() {
+		return streamOCID;
+	}
+
+	String getPartition() {
+		return partition;
+	}
+
+	long getReadAfterOffset() {
+		return readAfterOffset;
+	}
+
+	String getCursor() {
+		return cursor;
+	}
+
+}
@@ -0,0 +1,140 @@
+// Copyright (c)  2022,  Oracle and/or its affiliates.
+// Licensed under the Universal Permissive License v 1.0 as shown at https://oss.oracle.com/licenses/upl.
+
+//Collects the latency of every processing stage and target host, and the message counters, of an invocation.
+//They are logged when the invocation ends, either as one summary or as one structured line per metric,
+//and then start anew. With metrics_output set to none nothing is recorded.
+
+package com.example.fn;
+
+import java.net.URI;
+import java.util.Map;
+import java.util.StringJoiner;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+final class FunctionMetrics {
+
+	private static final Logger LOGGER = Logger.getLogger(FunctionMetrics.class.getName());
+	// summary, lines or none
+	private static final String OUTPUT = FunctionConfig.stringValue("metrics_output", "summary");
+	private static final boolean ENABLED = !"none".equalsIgnoreCase(OUTPUT);
+	// the keys are the labels of the metrics
+	private static final ConcurrentMap<String, LatencyHistogram> LATENCIES = new ConcurrentHashMap<>();
+	private static final ConcurrentMap<String, LongAdder> COUNTERS = new ConcurrentHashMap<>();
+
+	private FunctionMetrics() {
+	}
+
+	/**
+	 * @param stage
+	 * @param startNanos
+	 *
+	 *                   This method records the time since startNanos, taken with
+	 *                   System.nanoTime(), as a latency of the stage.
+	 */
+	static void recordLatency(String stage, long startNanos) {
+
+		if (ENABLED) {
+			long latencyNanos = System.nanoTime() - startNanos;
+			LATENCIES.computeIfAbsent("stage=" + stage, key -> new LatencyHistogram()).record(latencyNanos);
+		}
+	}
+
+	/**
+	 * @param targetUri
+	 * @param startNanos
+	 *
+	 *                   This method records the latency of a target call, for all
+	 *                   the targets and for the host of the target.
+	 */
+	static void recordTargetLatency(URI targetUri, long startNanos) {
+
+		if (ENABLED) {
+			long latencyNanos = System.nanoTime() - startNanos;
+			LATENCIES.computeIfAbsent("stage=target", key -> new LatencyHistogram()).record(latencyNanos);
+			LATENCIES.computeIfAbsent("stage=target host=" + targetUri.getAuthority(), key -> new LatencyHistogram())
+					.record(latencyNanos);
+		}
+	}
+
+	/**
+	 * @param counter
+	 */
+	static void increment(String counter) {
+		add(counter, 1);
+	}
+
+	/**
+	 * @param counter
+	 * @param delta
+	 */
+	static void add(String counter, long delta) {
+
+		if (ENABLED) {
+			COUNTERS.computeIfAbsent("name=" + counter, key -> new LongAdder()).add(delta);
+		}
+	}
+
+	/**
+	 * @param errorStreamOCID
+	 *
+	 *                        This method counts a message moved to the error
+	 *                        stream.
+	 */
+	static void incrementRouted(String errorStreamOCID) {
+
+		if (ENABLED) {
+			COUNTERS.computeIfAbsent("name=routed stream=" + errorStreamOCID, key -> new LongAdder()).increment();
+		}
+	}
+
+	/**
+	 * This method logs the metrics recorded since the last call, in the order of
+	 * their labels, and starts recording anew.
+	 */
+	static void logAndReset() {
+
+		if (!ENABLED) {
+			return;
+		}
+
+		Map<String, String> lines = new TreeMap<>();
+
+		LATENCIES.forEach((labels, histogram) -> {
+			LatencyHistogram.Snapshot snapshot = histogram.snapshotAndReset();
+			if (snapshot.getCount() > 0) {
+				lines.put(labels, "metric=latency " + labels + " count=" + snapshot.getCount() + " mean_us="
+						+ snapshot.getMeanMicros() + " p50_us=" + snapshot.getPercentileMicros(50) + " p90_us="
+						+ snapshot.getPercentileMicros(90) + " p99_us=" + snapshot.getPercentileMicros(99)
+						+ " max_us=" + snapshot.getMaxMicros());
+			}
+		});
+
+		COUNTERS.forEach((labels, counter) -> {
+			long value = counter.sumThenReset();
+			if (value > 0) {
+				lines.put(labels, "metric=counter " + labels + " value=" + value);
+			}
+		});
+
+		if (lines.isEmpty()) {
+			return;
+		}
+
+		if ("lines".equalsIgnoreCase(OUTPUT)) {
+			lines.values().forEach(line -> LOGGER.log(Level.INFO, line));
+			return;
+		}
+
+		StringJoiner summary = new StringJoiner(System.lineSeparator(), "Invocation metrics:" + System.lineSeparator(),
+				"");
+		lines.values().forEach(summary::add);
+		LOGGER.log(Level.INFO, summary.toString());
+	}
+
+}
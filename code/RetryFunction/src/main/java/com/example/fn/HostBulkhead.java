@@ -0,0 +1,206 @@
+// Copyright (c)  2022,  Oracle and/or its affiliates.
+// Licensed under the Universal Permissive License v 1.0 as shown at https://oss.oracle.com/licenses/upl.
+
+//Limits the no. of calls in flight to a target host, for the lifetime of the Function container.
+//The limit of each host adapts to the host: it grows by about one for every limit calls that are fast
+//and succeed (additive increase), and is halved when a call fails or is slow (multiplicative decrease).
+//Calls over the limit wait in a bounded queue of the host, so a slow host holds only its own callers.
+
+package com.example.fn;
+
+import java.net.URI;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+final class HostBulkhead {
+
+	private static final Logger LOGGER = Logger.getLogger(HostBulkhead.class.getName());
+	private static final int INITIAL_LIMIT = Math.max(1, FunctionConfig.intValue("host_bulkhead_initial_limit", 8));
+	private static final int MAX_LIMIT = Math.max(INITIAL_LIMIT,
+			FunctionConfig.intValue("host_bulkhead_max_limit", 64));
+	private static final int MIN_LIMIT = 1;
+	private static final double DECREASE_FACTOR = 0.5;
+	// a call taking longer than this counts as a sign of overload
+	private static final long SLOW_CALL_NANOS = TimeUnit.MILLISECONDS
+			.toNanos(FunctionConfig.intValue("host_bulkhead_slow_call_millis", 2000));
+	// No. of calls that may wait for a host at the limit
+	private static final int MAX_QUEUE = Math.max(0, FunctionConfig.intValue("host_bulkhead_max_queue", 256));
+	private static final long MAX_WAIT_MILLIS = FunctionConfig.intValue("host_bulkhead_max_wait_millis", 5000);
+	// limit decreases are at most once per this interval, so that one burst of
+	// failures halves the limit only once
+	private static final long DECREASE_INTERVAL_NANOS = TimeUnit.MILLISECONDS.toNanos(500);
+	private static final ConcurrentMap<String, HostBulkhead> BULKHEADS = new ConcurrentHashMap<>();
+
+	private final String host;
+	private double limit = INITIAL_LIMIT;
+	private int inFlight;
+	// time of the next allowed decrease, on the System.nanoTime() scale
+	private long nextDecrease;
+	private final Deque<CompletableFuture<Void>> waiters = new ArrayDeque<>();
+
+	private HostBulkhead(String host) {
+		this.host = host;
+	}
+
+	/**
+	 * @param targetUri
+	 * @return HostBulkhead Returns the bulkhead of the host and port of the
+	 *         target.
+	 */
+	static HostBulkhead forTarget(URI targetUri) {
+
+		String host = targetUri.getAuthority() != null ? targetUri.getAuthority() : "";
+		return BULKHEADS.computeIfAbsent(host, HostBulkhead::new);
+	}
+
+	/**
+	 * @param maxWaitMillis
+	 * @return CompletableFuture Completes once a call to the host may be made. It
+	 *         fails with RejectedExecutionException if the queue of the host is
+	 *         full, or with TimeoutException if the wait takes longer than
+	 *         maxWaitMillis or the configured maximum wait.
+	 *
+	 *         Every completed acquire must be followed by a release.
+	 */
+	synchronized CompletableFuture<Void> acquireAsync(long maxWaitMillis) {
+
+		if (inFlight < (int) limit) {
+			inFlight++;
+			return CompletableFuture.completedFuture(null);
+		}
+
+		if (waiters.size() >= MAX_QUEUE || maxWaitMillis <= 0) {
+			return CompletableFuture.failedFuture(
+					new RejectedExecutionException("Too many calls waiting for target host " + host));
+		}
+
+		CompletableFuture<Void> waiter = new CompletableFuture<>();
+		waiters.add(waiter);
+		// a waiter that timed out or was interrupted leaves the queue, so that it
+		// neither counts against the queue size nor takes a permit
+		waiter.whenComplete((granted, ex) -> {
+			if (ex != null) {
+				removeWaiter(waiter);
+			}
+		});
+		return waiter.orTimeout(Math.min(MAX_WAIT_MILLIS, maxWaitMillis), TimeUnit.MILLISECONDS);
+	}
+
+	private synchronized void removeWaiter(CompletableFuture<Void> waiter) {
+		waiters.remove(waiter);
+	}
+
+	/**
+	 * @param maxWaitMillis
+	 * @throws InterruptedException
+	 *
+	 *                              This method blocks until a call to the host may
+	 *                              be made. It throws RejectedExecutionException if
+	 *                              the queue of the host is full or the wait takes
+	 *                              too long.
+	 */
+	void acquire(long maxWaitMillis) throws InterruptedException {
+
+		CompletableFuture<Void> permit = acquireAsync(maxWaitMillis);
+
+		try {
+			permit.get();
+
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof RejectedExecutionException) {
+				throw (RejectedExecutionException) e.getCause();
+			}
+			throw new RejectedExecutionException("Timed out waiting for target host " + host);
+
+		} catch (InterruptedException e) {
+			if (!permit.completeExceptionally(e)) {
+				// the permit was granted meanwhile, give it back
+				cancel();
+			}
+			throw e;
+		}
+
+	}
+
+	/**
+	 * @param latencyNanos
+	 * @param failed
+	 *
+	 *                     This method ends a call to the host and adapts the limit
+	 *                     to its outcome. A waiting call is let through if the
+	 *                     limit allows.
+	 */
+	void release(long latencyNanos, boolean failed) {
+		endCall(true, failed || latencyNanos > SLOW_CALL_NANOS);
+	}
+
+	/**
+	 * This method ends a call whose outcome says nothing about the host, e.g.
+	 * because the thread was interrupted. The limit is not changed.
+	 */
+	void cancel() {
+		endCall(false, false);
+	}
+
+	private void endCall(boolean adapt, boolean overloaded) {
+
+		List<CompletableFuture<Void>> granted = new ArrayList<>();
+
+		synchronized (this) {
+			inFlight--;
+
+			long now = System.nanoTime();
+			if (adapt && overloaded) {
+				if (now - nextDecrease >= 0) {
+					limit = Math.max(MIN_LIMIT, limit * DECREASE_FACTOR);
+					nextDecrease = now + DECREASE_INTERVAL_NANOS;
+					LOGGER.log(Level.FINE, "Limit of target host {0} decreased to {1}", new Object[] { host, limit });
+				}
+			} else if (adapt) {
+				limit = Math.min(MAX_LIMIT, limit + 1 / limit);
+			}
+
+			while (!waiters.isEmpty() && inFlight < (int) limit) {
+				inFlight++;
+				granted.add(waiters.poll());
+			}
+		}
+
+		// complete outside the lock, the waiters continue on this thread. A waiter
+		// that timed out meanwhile gives its permit back.
+		for (CompletableFuture<Void> waiter : granted) {
+			if (!waiter.complete(null)) {
+				cancel();
+			}
+		}
+
+	}
+
+	/**
+	 * This method logs the current limit, calls in flight and queue depth of every
+	 * target host.
+	 */
+	static void logMetrics() {
+
+		for (Map.Entry<String, HostBulkhead> entry : BULKHEADS.entrySet()) {
+			HostBulkhead bulkhead = entry.getValue();
+			synchronized (bulkhead) {
+				LOGGER.log(Level.INFO, "Target host {0}: limit {1}, in flight {2}, queued {3}", new Object[] {
+						entry.getKey(), (int) bulkhead.limit, bulkhead.inFlight, bulkhead.waiters.size() });
+			}
+		}
+
+	}
+
+}
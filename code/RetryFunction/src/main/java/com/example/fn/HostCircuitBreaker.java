@@ -0,0 +1,136 @@
+// Copyright (c)  2022,  Oracle and/or its affiliates.
+// Licensed under the Universal Permissive License v 1.0 as shown at https://oss.oracle.com/licenses/upl.
+
+//Stops calling a target host that keeps failing, for the lifetime of the Function container.
+//A breaker is closed while its host responds. After a no. of consecutive failures it opens, and no calls
+//are made to the host for a while. Then it is half open: a few trial calls are let through, and the
+//breaker closes again if they succeed or opens again if one of them fails.
+
+package com.example.fn;
+
+import java.net.URI;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+final class HostCircuitBreaker {
+
+	enum State {
+		CLOSED, OPEN, HALF_OPEN
+	}
+
+	private static final Logger LOGGER = Logger.getLogger(HostCircuitBreaker.class.getName());
+	// No. of consecutive failed calls that open the breaker
+	private static final int FAILURE_THRESHOLD = Math.max(1,
+			FunctionConfig.intValue("circuit_breaker_failure_threshold", 5));
+	private static final long OPEN_NANOS = TimeUnit.SECONDS
+			.toNanos(FunctionConfig.intValue("circuit_breaker_open_seconds", 30));
+	// No. of trial calls made at the same time while half open
+	private static final int HALF_OPEN_CALLS = Math.max(1,
+			FunctionConfig.intValue("circuit_breaker_half_open_calls", 1));
+	private static final ConcurrentMap<String, HostCircuitBreaker> BREAKERS = new ConcurrentHashMap<>();
+
+	private final String host;
+	private State state = State.CLOSED;
+	private int consecutiveFailures;
+	private int trialCalls;
+	// time the breaker turns half open, on the System.nanoTime() scale
+	private long openUntil;
+
+	private HostCircuitBreaker(String host) {
+		this.host = host;
+	}
+
+	/**
+	 * @param targetUri
+	 * @return HostCircuitBreaker Returns the breaker of the host and port of the
+	 *         target.
+	 */
+	static HostCircuitBreaker forTarget(URI targetUri) {
+
+		String host = targetUri.getAuthority() != null ? targetUri.getAuthority() : "";
+		return BREAKERS.computeIfAbsent(host, HostCircuitBreaker::new);
+	}
+
+	/**
+	 * @param statusCode
+	 * @return boolean Returns true if the response status shows that the host is
+	 *         not able to serve calls: it is throttling them, or a gateway in front
+	 *         of it finds it unavailable. Other statuses, e.g. a 500, are about the
+	 *         message itself. I/O errors and timeouts are reported as failures too.
+	 */
+	static boolean isHostFailure(int statusCode) {
+		return statusCode == 429 || statusCode == 502 || statusCode == 503 || statusCode == 504;
+	}
+
+	/**
+	 * @return boolean Returns true if a call to the host may be made. The result
+	 *         of a permitted call must be reported with onSuccess or onFailure.
+	 */
+	synchronized boolean tryAcquire() {
+
+		if (state == State.OPEN) {
+			if (System.nanoTime() - openUntil < 0) {
+				return false;
+			}
+			state = State.HALF_OPEN;
+			trialCalls = 0;
+			LOGGER.log(Level.INFO, "Circuit breaker of {0} is half open.", host);
+		}
+
+		if (state == State.HALF_OPEN) {
+			if (trialCalls >= HALF_OPEN_CALLS) {
+				return false;
+			}
+			trialCalls++;
+		}
+
+		return true;
+	}
+
+	/**
+	 * This method reports a call that the host served.
+	 */
+	synchronized void onSuccess() {
+
+		if (state == State.HALF_OPEN) {
+			LOGGER.log(Level.INFO, "Circuit breaker of {0} is closed.", host);
+		}
+		state = State.CLOSED;
+		consecutiveFailures = 0;
+	}
+
+	/**
+	 * This method reports a call that failed because of the host. The breaker
+	 * opens when the failure threshold is reached, or when a trial call fails.
+	 */
+	synchronized void onFailure() {
+
+		consecutiveFailures++;
+
+		if (state == State.HALF_OPEN || (state == State.CLOSED && consecutiveFailures >= FAILURE_THRESHOLD)) {
+			state = State.OPEN;
+			openUntil = System.nanoTime() + OPEN_NANOS;
+			LOGGER.log(Level.WARNING, "Circuit breaker of {0} is open after {1} failed calls.",
+					new Object[] { host, consecutiveFailures });
+		}
+	}
+
+	/**
+	 * This method reports a permitted call that was not made or whose outcome
+	 * says nothing about the host, e.g. because the thread was interrupted.
+	 */
+	synchronized void onCancelled() {
+
+		if (state == State.HALF_OPEN && trialCalls > 0) {
+			trialCalls--;
+		}
+	}
+
+	synchronized State getState() {
+		return state;
+	}
+
+}
@@ -0,0 +1,128 @@
+// Copyright (c)  2022,  Oracle and/or its affiliates.
+// Licensed under the Universal Permissive License v 1.0 as shown at https://oss.oracle.com/licenses/upl.
+
+//Records latencies in microseconds with a fixed relative precision, in the manner of HdrHistogram.
+//Values below 32 are counted exactly. Above, every power of two is split into 32 buckets, so a reported
+//value is at most about 3% above the recorded one. Recording is lock free and does not allocate.
+
+package com.example.fn;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+final class LatencyHistogram {
+
+	private static final int SUB_BUCKET_BITS = 5;
+	private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+	// latencies above 2^40 microseconds (about 12 days) are counted as 2^40
+	private static final int MAX_EXPONENT = 40;
+	private static final long MAX_VALUE = (1L << MAX_EXPONENT) - 1;
+
+	private final AtomicLongArray counts = new AtomicLongArray(
+			SUB_BUCKETS + (MAX_EXPONENT - SUB_BUCKET_BITS) * SUB_BUCKETS);
+	private final LongAdder sum = new LongAdder();
+	private final AtomicLong max = new AtomicLong();
+
+	/**
+	 * @param latencyNanos
+	 *
+	 *                     This method records a latency.
+	 */
+	void record(long latencyNanos) {
+
+		long micros = Math.min(MAX_VALUE, Math.max(0, TimeUnit.NANOSECONDS.toMicros(latencyNanos)));
+
+		counts.incrementAndGet(indexOf(micros));
+		sum.add(micros);
+		max.accumulateAndGet(micros, Math::max);
+	}
+
+	/**
+	 * @return Snapshot Returns the latencies recorded since the last snapshot and
+	 *         starts recording anew.
+	 */
+	Snapshot snapshotAndReset() {
+
+		long[] snapshot = new long[counts.length()];
+		long count = 0;
+		for (int i = 0; i < snapshot.length; i++) {
+			snapshot[i] = counts.getAndSet(i, 0);
+			count += snapshot[i];
+		}
+
+		return new Snapshot(snapshot, count, sum.sumThenReset(), max.getAndSet(0));
+	}
+
+	private static int indexOf(long value) {
+
+		if (value < SUB_BUCKETS) {
+			return (int) value;
+		}
+		int exponent = 63 - Long.numberOfLeadingZeros(value);
+		int shift = exponent - SUB_BUCKET_BITS;
+		return SUB_BUCKETS + shift * SUB_BUCKETS + (int) (value >>> shift) - SUB_BUCKETS;
+	}
+
+	/**
+	 * @param index
+	 * @return long Returns the highest value counted in the bucket.
+	 */
+	private static long highestValueOf(int index) {
+
+		if (index < SUB_BUCKETS) {
+			return index;
+		}
+		int shift = (index - SUB_BUCKETS) / SUB_BUCKETS;
+		long lowest = (long) ((index - SUB_BUCKETS) % SUB_BUCKETS + SUB_BUCKETS) << shift;
+		return lowest + (1L << shift) - 1;
+	}
+
+	static final class Snapshot {
+
+		private final long[] counts;
+		private final long count;
+		private final long sum;
+		private final long max;
+
+		private Snapshot(long[] counts, long count, long sum, long max) {
+			this.counts = counts;
+			this.count = count;
+			this.sum = sum;
+			this.max = max;
+		}
+
+		long getCount() {
+			return count;
+		}
+
+		long getMeanMicros() {
+			return count == 0 ? 0 : sum / count;
+		}
+
+		long getMaxMicros() {
+			return max;
+		}
+
+		/**
+		 * @param percentile
+		 * @return long Returns the latency below which the given percentage of the
+		 *         recorded latencies fall, in microseconds.
+		 */
+		long getPercentileMicros(double percentile) {
+
+			long rank = Math.max(1, (long) Math.ceil(percentile / 100 * count));
+			long seen = 0;
+			for (int i = 0; i < counts.length; i++) {
+				seen += counts[i];
+				if (seen >= rank) {
+					return Math.min(max, highestValueOf(i));
+				}
+			}
+			return max;
+		}
+
+	}
+
+}
@@ -10,17 +10,25 @@ package com.example.fn;
 import static java.nio.charset.StandardCharsets.UTF_8;
 
 import java.io.IOException;
-import java.io.InputStream;
-import java.net.URI;
 import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
-import java.net.http.HttpRequest.Builder;
 import java.net.http.HttpResponse;
 import java.net.http.HttpResponse.BodyHandlers;
-import java.util.Arrays;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.function.Supplier;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -29,42 +37,50 @@ import javax.ws.rs.core.Response.Status.Family;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
 import com.fnproject.fn.api.httpgateway.HTTPGatewayContext;
-import com.oracle.bmc.auth.ResourcePrincipalAuthenticationDetailsProvider;
 import com.oracle.bmc.model.BmcException;
-import com.oracle.bmc.secrets.SecretsClient;
 import com.oracle.bmc.secrets.model.Base64SecretBundleContentDetails;
 import com.oracle.bmc.secrets.requests.GetSecretBundleByNameRequest;
 import com.oracle.bmc.secrets.responses.GetSecretBundleByNameResponse;
-import com.oracle.bmc.streaming.StreamAdminClient;
-import com.oracle.bmc.streaming.StreamClient;
 import com.oracle.bmc.streaming.model.CreateCursorDetails;
 import com.oracle.bmc.streaming.model.CreateCursorDetails.Type;
 import com.oracle.bmc.streaming.model.Message;
-import com.oracle.bmc.streaming.model.PutMessagesDetails;
-import com.oracle.bmc.streaming.model.PutMessagesDetailsEntry;
-import com.oracle.bmc.streaming.model.PutMessagesResultEntry;
-import com.oracle.bmc.streaming.model.Stream;
-import com.oracle.bmc.streaming.model.Stream.LifecycleState;
 import com.oracle.bmc.streaming.requests.CreateCursorRequest;
 import com.oracle.bmc.streaming.requests.GetMessagesRequest;
-import com.oracle.bmc.streaming.requests.GetStreamRequest;
-import com.oracle.bmc.streaming.requests.ListStreamsRequest;
-import com.oracle.bmc.streaming.requests.PutMessagesRequest;
 import com.oracle.bmc.streaming.responses.CreateCursorResponse;
 import com.oracle.bmc.streaming.responses.GetMessagesResponse;
-import com.oracle.bmc.streaming.responses.GetStreamResponse;
-import com.oracle.bmc.streaming.responses.ListStreamsResponse;
-import com.oracle.bmc.streaming.responses.PutMessagesResponse;
 
 public class RetryFunction {
 	private static final Logger LOGGER = Logger.getLogger(RetryFunction.class.getName());
-	private final ResourcePrincipalAuthenticationDetailsProvider provider = ResourcePrincipalAuthenticationDetailsProvider
-			.builder().build();
+	// Auth tokens read from the Vault, shared by the invocations of the container
+	private final SecretCache secretCache = new SecretCache(this::getSecretFromVault);
 	private static final String VAULT_OCID = System.getenv().get("vault_ocid");
 	private static final String STREAM_COMPARTMENT_OCID = System.getenv().get("stream_compartment_ocid");
 	private static final String DEFAULT_ERROR_STREAM_OCID = System.getenv().get("default_error_stream_ocid");
-	private static final String[] OPERATIONS = new String[] { "PUT", "POST", "DELETE" };
+	private static final ObjectReader JSON_READER = new ObjectMapper().reader();
+	// Maximum no. of messages read with a single GetMessages call in drain mode
+	private static final int GET_MESSAGES_LIMIT = FunctionConfig.intValue("get_messages_limit", 1000);
+	// readPartition value to retry all the partitions of the stream
+	private static final String ALL_PARTITIONS = "all";
+	// No. of partitions retried at the same time, shared by the invocations of a
+	// container
+	private static final int PARTITION_PARALLELISM = FunctionConfig.intValue("retry_partition_parallelism", 8);
+	private static final Executor PARTITION_EXECUTOR = createPartitionExecutor();
+	// Target calls are made with sendAsync when retry_execution_mode is async
+	private static final boolean ASYNC_EXECUTION = "async"
+			.equalsIgnoreCase(FunctionConfig.stringValue("retry_execution_mode", "blocking"));
+	// Parsing, Vault lookups and error stream writes of async mode, so that they
+	// never block a thread of the HttpClient
+	private static final Executor ASYNC_TASK_EXECUTOR = ASYNC_EXECUTION
+			? TaskExecutors.create("retry-task", FunctionConfig.intValue("retry_async_task_threads", 4))
+			: null;
+	// set when the blocking calls of the container run on virtual threads
+	private static final Executor MESSAGE_EXECUTOR = TaskExecutors.virtualThreads();
+	// No. of target calls outstanding at the same time in a container, in async
+	// or virtual thread mode
+	private static final Semaphore OUTSTANDING_REQUESTS = new Semaphore(
+			Math.max(1, FunctionConfig.intValue("retry_async_max_outstanding", 64)));
 
 	/**
 	 * @param requestBody
@@ -78,19 +94,24 @@ public class RetryFunction {
 	{
 
 		Map<String, String> errorStreamMapping = new HashMap<>();
-		ObjectMapper mapper = new ObjectMapper();
-		StreamAdminClient streamAdminClient = StreamAdminClient.builder().build(provider);
+		StreamAdminApi streamAdminClient = OciClients.streamAdminClient();
 
 		String readPartition = "";
 		int noOfMessagesToProcess = 0;
-		int readAfterOffset = 0;
+		long readAfterOffset = 0;
 		String streamOCIDToRetry = "";
 
 		try {
-			JsonNode jsonNode = mapper.readTree(requestBody);
+			JsonNode jsonNode = JSON_READER.readTree(requestBody);
 
-			String[] keys = { "streamOCIDToRetry", "readAfterOffset", "readPartition", "noOfMessagesToProcess",
-					"errormapping" };
+			// a consumer group keeps the offsets itself and a continuation token holds
+			// them, so no partition and offset are given with either
+			String consumerGroup = jsonNode.path("consumerGroup").asText("");
+			String continuationToken = jsonNode.path("continuationToken").asText("");
+			String[] keys = consumerGroup.isEmpty() && continuationToken.isEmpty()
+					? new String[] { "streamOCIDToRetry", "readAfterOffset", "readPartition", "noOfMessagesToProcess",
+							"errormapping" }
+					: new String[] { "streamOCIDToRetry", "noOfMessagesToProcess", "errormapping" };
 
 			for (String key : keys) {
 				if (!jsonNode.has(key)) {
@@ -116,10 +137,25 @@ public class RetryFunction {
 
 			}
 
-			readAfterOffset = jsonNode.path("readAfterOffset").asInt();
+			readAfterOffset = jsonNode.path("readAfterOffset").asLong();
 
 			readPartition = jsonNode.path("readPartition").asText();
 
+			// position to start reading the partition from
+			ContinuationToken start = new ContinuationToken(streamOCIDToRetry, readPartition, readAfterOffset, null);
+			if (!continuationToken.isEmpty()) {
+				start = ContinuationToken.decode(continuationToken);
+
+				if (start == null || !streamOCIDToRetry.equals(start.getStreamOCID())) {
+					LOGGER.log(Level.SEVERE, "Processing Failed. continuationToken is not a token of {0}",
+							streamOCIDToRetry);
+
+					httpGatewayContext.setStatusCode(500);
+					return "continuationToken is not a token of streamOCIDToRetry. Pass the token of the last response";
+				}
+				readPartition = start.getPartition();
+			}
+
 			noOfMessagesToProcess = jsonNode.path("noOfMessagesToProcess").asInt();
 			if (noOfMessagesToProcess <= 0) {
 				LOGGER.log(Level.INFO, "Stopped Function execution as noOfMessagesToProcess <=0.");
@@ -158,12 +194,70 @@ public class RetryFunction {
 
 			}
 
+			ErrorStreamPublisher errorStreamPublisher = new ErrorStreamPublisher(streamAdminClient);
+
+			// no target call outlasts the invocation. In drain mode the pages of the stream
+			// are followed within a time budget
+			InvocationDeadline deadline = InvocationDeadline.of(httpGatewayContext);
+			boolean drain = jsonNode.path("drain").asBoolean(false);
+			if (drain && jsonNode.has("maxDrainSeconds")) {
+				deadline = deadline.limitTo(jsonNode.path("maxDrainSeconds").asLong());
+			}
+
 			try {
-				return processStreamMessages(streamOCIDToRetry, streamAdminClient, readPartition, readAfterOffset,
-						errorStreamMapping, noOfMessagesToProcess);
+				String result;
+
+				if (!consumerGroup.isEmpty()) {
+					String consumerInstance = jsonNode.path("consumerInstance")
+							.asText(ConsumerGroupCursor.CONTAINER_INSTANCE);
+
+					result = processGroupMessages(streamOCIDToRetry, streamAdminClient, consumerGroup,
+							consumerInstance, errorStreamMapping, noOfMessagesToProcess, errorStreamPublisher, deadline,
+							drain);
+				} else if (ALL_PARTITIONS.equalsIgnoreCase(readPartition)) {
+					// the offsets of individual partitions can be given in readAfterOffsets, and
+					// their positions in continuationTokens
+					JsonNode partitionOffsets = jsonNode.path("readAfterOffsets");
+					long defaultOffset = readAfterOffset;
+					Map<String, ContinuationToken> partitionTokens = new HashMap<>();
+
+					Iterator<Map.Entry<String, JsonNode>> tokenNodes = jsonNode.path("continuationTokens").fields();
+					while (tokenNodes.hasNext()) {
+						Map.Entry<String, JsonNode> entry = tokenNodes.next();
+						ContinuationToken token = ContinuationToken.decode(entry.getValue().asText());
+
+						if (token == null || !streamOCIDToRetry.equals(token.getStreamOCID())
+								|| !entry.getKey().equals(token.getPartition())) {
+							LOGGER.log(Level.SEVERE,
+									"Processing Failed. continuationTokens of partition {0} is not valid",
+									entry.getKey());
+
+							httpGatewayContext.setStatusCode(500);
+							return "continuationTokens of partition " + entry.getKey()
+									+ " is not a token of the partition. Pass the tokens of the last response";
+						}
+						partitionTokens.put(entry.getKey(), token);
+					}
+
+					String streamOCID = streamOCIDToRetry;
+					result = processAllPartitions(streamOCIDToRetry, streamAdminClient,
+							partition -> partitionTokens.getOrDefault(partition, new ContinuationToken(streamOCID,
+									partition, partitionOffsets.path(partition).asLong(defaultOffset), null)),
+							errorStreamMapping, noOfMessagesToProcess, errorStreamPublisher, deadline, drain);
+				} else {
+					result = processStreamMessages(streamOCIDToRetry, streamAdminClient, start, errorStreamMapping,
+							noOfMessagesToProcess, errorStreamPublisher, deadline, drain);
+				}
+
+				if (errorStreamPublisher.getUnpublishedCount() > 0) {
+					httpGatewayContext.setStatusCode(500);
+				}
+				return result;
 
 			} catch (BmcException e) {
 				LOGGER.severe(e.getLocalizedMessage());
+				// validate the stream again on the next call
+				StreamClientCache.invalidate(streamOCIDToRetry);
 				httpGatewayContext.setStatusCode(e.getStatusCode());
 				return e.getLocalizedMessage();
 			}
@@ -183,66 +277,273 @@ public class RetryFunction {
 	 * 
 	 *         This method checks if a stream exist
 	 */
-	private boolean streamExist(String streamOCID, StreamAdminClient streamAdminClient) {
+	private boolean streamExist(String streamOCID, StreamAdminApi streamAdminClient) {
+
+		// validated streams are cached by the container
+		return StreamClientCache.isActive(streamOCID, STREAM_COMPARTMENT_OCID, streamAdminClient);
+
+	}
 
-		ListStreamsRequest listRequest = ListStreamsRequest.builder().compartmentId(STREAM_COMPARTMENT_OCID)
-				.id(streamOCID).lifecycleState(LifecycleState.Active).build();
+	/**
+	 * @return Executor
+	 * 
+	 *         This method creates the executor used to retry the partitions of a
+	 *         stream. It is shared by all the invocations of a container.
+	 */
+	private static Executor createPartitionExecutor() {
 
-		ListStreamsResponse listResponse = streamAdminClient.listStreams(listRequest);
+		AtomicInteger threadCount = new AtomicInteger();
 
-		return !listResponse.getItems().isEmpty();
+		return Executors.newFixedThreadPool(Math.max(1, PARTITION_PARALLELISM), runnable -> {
+			Thread thread = new Thread(runnable, "partition-" + threadCount.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		});
 
 	}
 
 	/**
 	 * @param streamOCIDToRetry
 	 * @param streamAdminClient
-	 * @param readPartition
-	 * @param readAfterOffset
+	 * @param start
 	 * @param errorStreamMapping
 	 * @param noOfMessagesToProcess
+	 * @param errorStreamPublisher
+	 * @param deadline
+	 * @param drain
 	 * @return String Returns the no. of processed and failed messages.
 	 * 
-	 *         This method gets the Stream from OCID, creates a Stream cursor and
-	 *         then reads and processes individual messages. It returns the process
-	 *         status, showing the no. of successfully processed messages, failed
-	 *         messages and if end of stream is reached, returns endOfStream as
-	 *         true.
+	 *         This method gets the Stream from OCID, then reads and processes
+	 *         individual messages of the partition from the start position. It
+	 *         returns the process status, showing the no. of successfully
+	 *         processed messages, failed messages and if end of stream is
+	 *         reached, returns endOfStream as true.
 	 */
-	private String processStreamMessages(String streamOCIDToRetry, StreamAdminClient streamAdminClient,
-			String readPartition, long readAfterOffset, Map<String, String> errorStreamMapping,
-			int noOfMessagesToProcess) {
+	private String processStreamMessages(String streamOCIDToRetry, StreamAdminApi streamAdminClient,
+			ContinuationToken start, Map<String, String> errorStreamMapping, int noOfMessagesToProcess,
+			ErrorStreamPublisher errorStreamPublisher, InvocationDeadline deadline, boolean drain) {
 
-		// Get the Stream to retry
-		Stream retryStream = getStream(streamOCIDToRetry, streamAdminClient);
+		// Get the streamClient of the Stream to retry
 
-		// Get the streamClient
+		StreamApi retryStreamClient = StreamClientCache.get(streamOCIDToRetry, streamAdminClient);
 
-		StreamClient retryStreamClient = StreamClient.builder().stream(retryStream).build(provider);
+		// Read and process messages in stream from the start position
 
-		// Get the cursor
+		RetryResult result;
+		try {
+			result = retryPartition(retryStreamClient, streamOCIDToRetry, start, errorStreamMapping,
+					noOfMessagesToProcess, errorStreamPublisher, deadline, drain);
+		} finally {
+			// write the failed messages to the error streams, also those of the pages
+			// retried before a failure
+			errorStreamPublisher.flush();
+			HostBulkhead.logMetrics();
+			FunctionMetrics.logAndReset();
+		}
+		result.setUnpublishedMessages(errorStreamPublisher.getUnpublishedCount());
 
-		String cursor = getStreamCursor(retryStreamClient, readPartition, streamOCIDToRetry, readAfterOffset);
+		return result.toJson();
+	}
 
-		// Read and process messages in stream using cursor
+	/**
+	 * @param streamOCIDToRetry
+	 * @param streamAdminClient
+	 * @param partitionStarts
+	 * @param errorStreamMapping
+	 * @param noOfMessagesToProcess
+	 * @param errorStreamPublisher
+	 * @param deadline
+	 * @param drain
+	 * @return String Returns the no. of processed and failed messages of every
+	 *         partition.
+	 * 
+	 *         This method reads and processes the messages of all the partitions
+	 *         of the stream at the same time. Every partition is read with its
+	 *         own cursor, starting at the position given for it by
+	 *         partitionStarts. A partition that fails is reported in its result,
+	 *         the other partitions are still processed.
+	 */
+	private String processAllPartitions(String streamOCIDToRetry, StreamAdminApi streamAdminClient,
+			Function<String, ContinuationToken> partitionStarts, Map<String, String> errorStreamMapping,
+			int noOfMessagesToProcess, ErrorStreamPublisher errorStreamPublisher, InvocationDeadline deadline,
+			boolean drain) {
 
-		return readMessagesFromStream(cursor, retryStreamClient, streamOCIDToRetry, errorStreamMapping,
-				noOfMessagesToProcess, streamAdminClient);
+		StreamApi retryStreamClient = StreamClientCache.get(streamOCIDToRetry, streamAdminClient);
+		int partitions = StreamClientCache.getPartitionCount(streamOCIDToRetry, streamAdminClient);
+
+		Map<String, CompletableFuture<RetryResult>> partitionResults = new LinkedHashMap<>();
+
+		try {
+			for (int i = 0; i < partitions; i++) {
+				String partition = String.valueOf(i);
+
+				partitionResults.put(partition, CompletableFuture.supplyAsync(() -> {
+					try {
+						return retryPartition(retryStreamClient, streamOCIDToRetry, partitionStarts.apply(partition),
+								errorStreamMapping, noOfMessagesToProcess, errorStreamPublisher, deadline, drain);
+
+					} catch (BmcException e) {
+						LOGGER.log(Level.SEVERE, "Retry of partition {0} failed. {1}",
+								new Object[] { partition, e.getLocalizedMessage() });
+						RetryResult result = new RetryResult();
+						result.setFailure(e.getStatusCode(), e.getLocalizedMessage());
+						return result;
+					}
+				}, PARTITION_EXECUTOR));
+			}
+
+			CompletableFuture.allOf(partitionResults.values().toArray(new CompletableFuture<?>[0])).join();
+
+		} finally {
+			// write the failed messages to the error streams, also those of the other
+			// partitions when a partition failed unexpectedly
+			errorStreamPublisher.flush();
+			HostBulkhead.logMetrics();
+			FunctionMetrics.logAndReset();
+		}
+
+		StringBuilder response = new StringBuilder("{\"partitions\":{");
+		boolean partitionFailed = false;
+
+		for (Map.Entry<String, CompletableFuture<RetryResult>> entry : partitionResults.entrySet()) {
+			RetryResult result = entry.getValue().join();
+			partitionFailed |= result.isFailed();
+
+			if (response.charAt(response.length() - 1) != '{') {
+				response.append(',');
+			}
+			response.append('"').append(entry.getKey()).append("\":").append(result.toJson());
+		}
+		response.append('}');
+
+		if (partitionFailed) {
+			// validate the stream again on the next call
+			StreamClientCache.invalidate(streamOCIDToRetry);
+		}
+		if (errorStreamPublisher.getUnpublishedCount() > 0) {
+			response.append(",\"unpublishedMessages\":").append(errorStreamPublisher.getUnpublishedCount());
+		}
+
+		return response.append('}').toString();
 	}
 
 	/**
-	 * @param streamOCID
+	 * @param streamOCIDToRetry
 	 * @param streamAdminClient
-	 * @return Stream
+	 * @param consumerGroup
+	 * @param consumerInstance
+	 * @param errorStreamMapping
+	 * @param noOfMessagesToProcess
+	 * @param errorStreamPublisher
+	 * @param deadline
+	 * @param drain
+	 * @return String Returns the no. of processed and failed messages and the
+	 *         committed offsets.
 	 * 
-	 *         This method obtains the Stream object from the stream OCID.
+	 *         This method reads and processes the messages of the partitions the
+	 *         consumer group gives to the instance. Without drain a single page
+	 *         is read, with drain pages are read until noOfMessagesToProcess
+	 *         messages are read, the partitions have no more messages or the
+	 *         deadline passes. The offsets of a page are committed once its
+	 *         messages are retried and its failed messages are written to the
+	 *         error streams. A page that is not completed is not committed, its
+	 *         messages are read again by the group.
 	 */
-	private Stream getStream(String streamOCID, StreamAdminClient streamAdminClient) {
+	private String processGroupMessages(String streamOCIDToRetry, StreamAdminApi streamAdminClient,
+			String consumerGroup, String consumerInstance, Map<String, String> errorStreamMapping,
+			int noOfMessagesToProcess, ErrorStreamPublisher errorStreamPublisher, InvocationDeadline deadline,
+			boolean drain) {
 
-		GetStreamResponse getResponse = streamAdminClient
-				.getStream(GetStreamRequest.builder().streamId(streamOCID).build());
+		StreamApi retryStreamClient = StreamClientCache.get(streamOCIDToRetry, streamAdminClient);
+		ConsumerGroupCursor groupCursor = new ConsumerGroupCursor(retryStreamClient, streamOCIDToRetry,
+				consumerGroup, consumerInstance);
+
+		RetryResult result = new RetryResult();
+		result.setConsumerGroup(consumerGroup);
+
+		try {
+			while (result.getReadMessages() < noOfMessagesToProcess && !deadline.isExpired()) {
+
+				int remaining = noOfMessagesToProcess - result.getReadMessages();
+				int limit = drain ? Math.min(remaining, GET_MESSAGES_LIMIT) : remaining;
+				List<Message> page = groupCursor.next(limit);
+
+				int readBefore = result.getReadMessages();
+				int unpublishedBefore = errorStreamPublisher.getUnpublishedCount();
+				retryMessages(page, result, errorStreamMapping, errorStreamPublisher, deadline);
+				errorStreamPublisher.flush();
+
+				if (result.getReadMessages() - readBefore < page.size()
+						|| errorStreamPublisher.getUnpublishedCount() > unpublishedBefore) {
+					LOGGER.log(Level.WARNING, "Page of consumer group {0} not committed, its messages are read again.",
+							consumerGroup);
+					break;
+				}
+
+				groupCursor.commit();
+				result.recordCommit(page);
+
+				if (page.size() < limit) {
+					result.setEndOfStream(true);
+					break;
+				}
+				if (!drain) {
+					break;
+				}
+			}
+
+		} finally {
+			// the failed messages of a page not completed are written too
+			errorStreamPublisher.flush();
+			HostBulkhead.logMetrics();
+			FunctionMetrics.logAndReset();
+		}
+		result.setUnpublishedMessages(errorStreamPublisher.getUnpublishedCount());
 
-		return getResponse.getStream();
+		return result.toJson();
+	}
+
+	/**
+	 * @param streamClient
+	 * @param streamOCIDToRetry
+	 * @param start
+	 * @param errorStreamMapping
+	 * @param noOfMessagesToProcess
+	 * @param errorStreamPublisher
+	 * @param deadline
+	 * @param drain
+	 * @return RetryResult Returns the no. of processed and failed messages and
+	 *         the continuation token of the position reached.
+	 * 
+	 *         This method reads and processes the messages of a partition from the
+	 *         start position. The cursor of a continuation token is read as is, so
+	 *         no cursor is created. A cursor is created from the offset otherwise,
+	 *         or when the service does not accept the cursor of the token.
+	 */
+	private RetryResult retryPartition(StreamApi streamClient, String streamOCIDToRetry, ContinuationToken start,
+			Map<String, String> errorStreamMapping, int noOfMessagesToProcess,
+			ErrorStreamPublisher errorStreamPublisher, InvocationDeadline deadline, boolean drain) {
+
+		Supplier<String> offsetCursor = () -> getStreamCursor(streamClient, start.getPartition(), streamOCIDToRetry,
+				start.getReadAfterOffset());
+
+		RetryResult result;
+		if (start.getCursor() != null) {
+			FunctionMetrics.increment("cursor_reused");
+			result = readMessagesFromStream(start.getCursor(), offsetCursor, streamClient, streamOCIDToRetry,
+					errorStreamMapping, noOfMessagesToProcess, errorStreamPublisher, deadline, drain);
+		} else {
+			result = readMessagesFromStream(offsetCursor.get(), null, streamClient, streamOCIDToRetry,
+					errorStreamMapping, noOfMessagesToProcess, errorStreamPublisher, deadline, drain);
+		}
+
+		// the offset is kept in the token in case the cursor expires
+		long readAfterOffset = result.getReadMessages() > 0 ? result.getLastReadOffset()
+				: start.getReadAfterOffset();
+		result.setContinuationToken(new ContinuationToken(streamOCIDToRetry, start.getPartition(), readAfterOffset,
+				result.getNextCursor()).encode());
+
+		return result;
 	}
 
 	/**
@@ -255,7 +556,7 @@ public class RetryFunction {
 	 *         This method creates a Stream message cursor using an
 	 *         AFTER_OFFSET/TRIM_HORIZON cursor type
 	 */
-	private String getStreamCursor(StreamClient streamClient, String readPartition, String streamOCIDToRetry,
+	private String getStreamCursor(StreamApi streamClient, String readPartition, String streamOCIDToRetry,
 			long readAfterOffset) {
 		CreateCursorDetails cursorDetails = null;
 
@@ -271,89 +572,285 @@ public class RetryFunction {
 		CreateCursorRequest createCursorRequest = CreateCursorRequest.builder().streamId(streamOCIDToRetry)
 				.createCursorDetails(cursorDetails).build();
 
+		long start = System.nanoTime();
 		CreateCursorResponse cursorResponse = streamClient.createCursor(createCursorRequest);
+		FunctionMetrics.recordLatency("create_cursor", start);
 
 		return cursorResponse.getCursor().getValue();
 	}
 
 	/**
 	 * @param cursor
+	 * @param fallbackCursor
 	 * @param streamClient
 	 * @param streamOCIDToRetry
 	 * @param errorStreamMapping
-	 * @param readAfterOffset
 	 * @param noOfMessagesToProcess
-	 * @param StreamAdminClient
-	 * @return String Returns the no. of processed and failed messages.
+	 * @param errorStreamPublisher
+	 * @param deadline
+	 * @param drain
+	 * @return RetryResult Returns the no. of processed and failed messages.
 	 * 
-	 *         This method is used to read the messages from stream
+	 *         This method is used to read the messages from stream. Without drain
+	 *         a single page of messages is read. With drain the pages are followed
+	 *         using the next cursor until noOfMessagesToProcess messages are read
+	 *         or the end of the stream is reached. Either way reading stops when
+	 *         the deadline passes. The lastReadOffset of the response is the
+	 *         position to resume from. The next cursor of the service is kept in
+	 *         the result when reading stopped at the end of a page. If the
+	 *         service does not accept the cursor, the fallback cursor is read
+	 *         instead, when one is given.
 	 */
-	private String readMessagesFromStream(String cursor, StreamClient streamClient, String streamOCIDToRetry,
-			Map<String, String> errorStreamMapping, int noOfMessagesToProcess, StreamAdminClient streamAdminClient) {
+	private RetryResult readMessagesFromStream(String cursor, Supplier<String> fallbackCursor,
+			StreamApi streamClient, String streamOCIDToRetry, Map<String, String> errorStreamMapping,
+			int noOfMessagesToProcess, ErrorStreamPublisher errorStreamPublisher, InvocationDeadline deadline,
+			boolean drain) {
 
-		long lastReadOffset = 0;
-		String endOfStreamMessage = "";
-		GetMessagesRequest getRequest = GetMessagesRequest.builder().streamId(streamOCIDToRetry).cursor(cursor)
-				.limit(noOfMessagesToProcess + 1).build();
+		RetryResult result = new RetryResult();
 
-		GetMessagesResponse getResponse = streamClient.getMessages(getRequest);
-		List<Message> responseItems = getResponse.getItems();
+		if (!drain) {
 
-		// if end of stream is reached, return
+			Function<String, GetMessagesRequest> getRequest = pageCursor -> GetMessagesRequest.builder()
+					.streamId(streamOCIDToRetry).cursor(pageCursor).limit(noOfMessagesToProcess + 1).build();
 
-		if (responseItems.isEmpty()) {
+			long start = System.nanoTime();
+			GetMessagesResponse getResponse;
+			try {
+				getResponse = streamClient.getMessages(getRequest.apply(cursor));
+			} catch (BmcException e) {
+				if (fallbackCursor == null || e.getStatusCode() != 400) {
+					throw e;
+				}
+				// e.g. an expired cursor of a continuation token
+				LOGGER.log(Level.INFO, "Cursor not accepted, reading from the offset instead. {0}",
+						e.getLocalizedMessage());
+				getResponse = streamClient.getMessages(getRequest.apply(fallbackCursor.get()));
+			}
+			FunctionMetrics.recordLatency("get_messages", start);
+			List<Message> responseItems = getResponse.getItems();
+
+			retryMessages(responseItems, result, errorStreamMapping, errorStreamPublisher, deadline);
 
-			return "{\"endOfStream\": true}";
+			if (result.getReadMessages() == responseItems.size()) {
+				result.setNextCursor(getResponse.getOpcNextCursor());
+			}
+
+			// a page shorter than requested means the end of stream is reached, unless
+			// the deadline stopped the retry before the end of the page
+
+			if (responseItems.size() < noOfMessagesToProcess && result.getReadMessages() == responseItems.size()) {
+				result.setEndOfStream(true);
+			}
+			return result;
 		}
 
-		if (responseItems.size() < noOfMessagesToProcess) {
+		// the next pages are read while the messages of the current page are retried
+		try (StreamPagePrefetcher pages = new StreamPagePrefetcher(streamClient, streamOCIDToRetry, cursor,
+				noOfMessagesToProcess, GET_MESSAGES_LIMIT, deadline, fallbackCursor)) {
 
-			endOfStreamMessage = ",\"endOfStream\": true";
+			List<Message> page;
+			boolean pageCompleted = true;
+			while ((page = pages.next()) != null) {
+
+				int readBefore = result.getReadMessages();
+				retryMessages(page, result, errorStreamMapping, errorStreamPublisher, deadline);
+				pageCompleted = result.getReadMessages() - readBefore == page.size();
+
+				if (deadline.isExpired()) {
+					break;
+				}
+			}
+
+			result.setEndOfStream(pages.isEndOfStream());
+			if (pageCompleted) {
+				result.setNextCursor(pages.getNextCursor());
+			}
 		}
 
-		// process the messages
+		return result;
+
+	}
 
-		int successMessages = 0;
-		int failedMessages = 0;
-		String streamKey = "";
-		String streamMessage = "";
+	/**
+	 * @param messages
+	 * @param result
+	 * @param errorStreamMapping
+	 * @param errorStreamPublisher
+	 * @param deadline
+	 * 
+	 *                             This method retries a page of messages in offset
+	 *                             order and records them in the result. It stops
+	 *                             early when the deadline passes, the messages left
+	 *                             stay in the stream for the next call.
+	 */
+	private void retryMessages(List<Message> messages, RetryResult result, Map<String, String> errorStreamMapping,
+			ErrorStreamPublisher errorStreamPublisher, InvocationDeadline deadline) {
 
-		for (Message message : responseItems) {
+		if (ASYNC_EXECUTION) {
+			retryMessagesAsync(messages, result, deadline,
+					message -> retryMessageAsync(message, errorStreamMapping, errorStreamPublisher, deadline));
+			return;
+		}
 
-			try {
-				streamMessage = new String(message.getValue(), UTF_8);
-				if (message.getKey() != null) {
+		if (MESSAGE_EXECUTOR != null) {
+			// the blocking calls of every message run on their own virtual thread
+			retryMessagesAsync(messages, result, deadline,
+					message -> CompletableFuture.supplyAsync(
+							() -> retryMessage(message, errorStreamMapping, errorStreamPublisher, deadline),
+							MESSAGE_EXECUTOR));
+			return;
+		}
 
-					streamKey = new String(message.getKey(), UTF_8);
-				} else {
-					streamKey = "";
-				}
+		for (Message message : messages) {
 
-				executeMessage(streamMessage, streamKey, errorStreamMapping, streamAdminClient);
+			if (deadline.isExpired()) {
+				LOGGER.log(Level.INFO, "Stopped reading at offset {0} as the time budget is used up.",
+						result.getLastReadOffset());
+				return;
+			}
 
-				successMessages = successMessages + 1;
+			result.recordMessage(message.getOffset(),
+					retryMessage(message, errorStreamMapping, errorStreamPublisher, deadline));
 
-			} catch (Exception ex) {
-				LOGGER.log(Level.SEVERE, "Retry Failed due to Exception in processing message. {0}",
-						ex.getLocalizedMessage());
-				ex.printStackTrace();
+			LOGGER.log(Level.INFO, "Read message at offset {0}", message.getOffset());
+		}
 
-				populateErrorStream(streamMessage, streamKey, errorStreamMapping.get(String.valueOf("unexpectedError")),
-						streamAdminClient);
+	}
 
-				failedMessages = failedMessages + 1;
+	/**
+	 * @param messages
+	 * @param result
+	 * @param deadline
+	 * @param retry
+	 * 
+	 *                      This method retries a page of messages without waiting
+	 *                      for each message. Messages with the same stream key are
+	 *                      still sent one after the other. The messages are
+	 *                      recorded in the result in offset order once all of them
+	 *                      completed, so the result is the same as with a
+	 *                      sequential retry.
+	 */
+	private void retryMessagesAsync(List<Message> messages, RetryResult result, InvocationDeadline deadline,
+			Function<Message, CompletableFuture<Boolean>> retry) {
+
+		List<CompletableFuture<Boolean>> outcomes = new ArrayList<>(messages.size());
+		// last message sent for every stream key of the page
+		Map<String, CompletableFuture<Boolean>> keyTails = new HashMap<>();
+
+		for (Message message : messages) {
 
+			if (deadline.isExpired()) {
+				LOGGER.log(Level.INFO, "Stopped reading before offset {0} as the time budget is used up.",
+						message.getOffset());
+				break;
 			}
-			// Return the offset upto which messages were read
-			lastReadOffset = message.getOffset();
 
-			LOGGER.log(Level.INFO, "Read message at offset {0}", lastReadOffset);
+			// wait while the maximum no. of target calls are outstanding
+			OUTSTANDING_REQUESTS.acquireUninterruptibly();
 
+			String streamKey = message.getKey() != null ? new String(message.getKey(), UTF_8) : "";
+			CompletableFuture<Boolean> previous = streamKey.isEmpty() ? null : keyTails.get(streamKey);
+
+			// retry hands the message to an executor, so it does not block the thread
+			// completing the previous message of the key
+			CompletableFuture<Boolean> outcome = (previous == null ? retry.apply(message)
+					: previous.thenCompose(succeeded -> retry.apply(message)))
+					.whenComplete((succeeded, ex) -> OUTSTANDING_REQUESTS.release());
+
+			if (!streamKey.isEmpty()) {
+				keyTails.put(streamKey, outcome);
+			}
+			outcomes.add(outcome);
 		}
 
-		return new StringBuilder("{\"lastReadOffset\":").append(lastReadOffset).append(" ,\"processedmessages\":")
-				.append(successMessages).append(",\"failedMessages\":").append(failedMessages)
-				.append(endOfStreamMessage).append("}").toString();
+		CompletableFuture.allOf(outcomes.toArray(new CompletableFuture<?>[0])).join();
+
+		for (int i = 0; i < outcomes.size(); i++) {
+			Message message = messages.get(i);
+			result.recordMessage(message.getOffset(), outcomes.get(i).join());
+
+			LOGGER.log(Level.INFO, "Read message at offset {0}", message.getOffset());
+		}
+
+	}
+
+	/**
+	 * @param message
+	 * @param errorStreamMapping
+	 * @param errorStreamPublisher
+	 * @param deadline
+	 * @return CompletableFuture Completes with false if the message failed with
+	 *         an exception, it never completes exceptionally.
+	 * 
+	 *         This method is the non blocking variant of retryMessage.
+	 */
+	private CompletableFuture<Boolean> retryMessageAsync(Message message, Map<String, String> errorStreamMapping,
+			ErrorStreamPublisher errorStreamPublisher, InvocationDeadline deadline) {
+
+		FunctionMetrics.increment("processed");
+		String streamMessage = new String(message.getValue(), UTF_8);
+		String streamKey = message.getKey() != null ? new String(message.getKey(), UTF_8) : "";
+
+		CompletableFuture<Void> execution;
+		try {
+			execution = executeMessageAsync(streamMessage, streamKey, errorStreamMapping, errorStreamPublisher,
+					deadline);
+		} catch (RuntimeException ex) {
+			execution = CompletableFuture.failedFuture(ex);
+		}
+
+		// the failed message is written on the task executor, a full batch is put
+		// to its error stream at once
+		return execution.handleAsync((done, ex) -> {
+			if (ex == null) {
+				return true;
+			}
+
+			Throwable cause = ex instanceof CompletionException && ex.getCause() != null ? ex.getCause() : ex;
+			LOGGER.log(Level.SEVERE, "Retry Failed due to Exception in processing message. {0}",
+					cause.getLocalizedMessage());
+			cause.printStackTrace();
+
+			FunctionMetrics.increment("failed");
+			errorStreamPublisher.add(errorStreamMapping.getOrDefault("unexpectedError", DEFAULT_ERROR_STREAM_OCID),
+					streamKey, streamMessage);
+			return false;
+		}, ASYNC_TASK_EXECUTOR);
+
+	}
+
+	/**
+	 * @param message
+	 * @param errorStreamMapping
+	 * @param errorStreamPublisher
+	 * @param deadline
+	 * @return boolean Returns false if the message failed with an exception.
+	 * 
+	 *         This method retries a single message read from the stream. A message
+	 *         that fails with an exception is moved to the unexpectedError
+	 *         stream.
+	 */
+	private boolean retryMessage(Message message, Map<String, String> errorStreamMapping,
+			ErrorStreamPublisher errorStreamPublisher, InvocationDeadline deadline) {
+
+		FunctionMetrics.increment("processed");
+		String streamMessage = new String(message.getValue(), UTF_8);
+		String streamKey = message.getKey() != null ? new String(message.getKey(), UTF_8) : "";
+
+		try {
+			executeMessage(streamMessage, streamKey, errorStreamMapping, errorStreamPublisher, deadline);
+			return true;
+
+		} catch (Exception ex) {
+			LOGGER.log(Level.SEVERE, "Retry Failed due to Exception in processing message. {0}",
+					ex.getLocalizedMessage());
+			ex.printStackTrace();
+
+			FunctionMetrics.increment("failed");
+			errorStreamPublisher.add(errorStreamMapping.getOrDefault("unexpectedError", DEFAULT_ERROR_STREAM_OCID),
+					streamKey, streamMessage);
+			return false;
+		}
 
 	}
 
@@ -361,110 +858,273 @@ public class RetryFunction {
 	 * @param streamMessage
 	 * @param streamKey
 	 * @param errorStreamMapping
-	 * @param StreamAdminClient
+	 * @param errorStreamPublisher
+	 * @param deadline
 	 * @throws InterruptedException
 	 * @throws IOException
 	 * 
 	 *                              This method parses target api payload and
-	 *                              processes it.
+	 *                              processes it. The target call times out at the
+	 *                              deadline at the latest.
 	 * 
 	 */
 	private void executeMessage(String streamMessage, String streamKey, Map<String, String> errorStreamMapping,
-			StreamAdminClient streamAdminClient) throws IOException, InterruptedException {
+			ErrorStreamPublisher errorStreamPublisher, InvocationDeadline deadline)
+			throws IOException, InterruptedException {
 
-		HttpClient httpClient = HttpClient.newHttpClient();
-		String targetRestApiPayload = "";
-		String vaultSecretName = "";
-		String targetRestApiOperation = "";
-		String targetRestApi = "";
-		StringBuilder failureMessage = new StringBuilder("");
-		boolean targetApiCallFailed = false;
+		// parse the stream message
+		long parseStart = System.nanoTime();
+		DataSyncMessage message = DataSyncMessage.read(streamMessage);
+		String failureMessage = message.validate();
+		FunctionMetrics.recordLatency("parse", parseStart);
+
+		if (failureMessage != null) {
+			LOGGER.log(Level.SEVERE, failureMessage);
+			errorStreamPublisher.add(DEFAULT_ERROR_STREAM_OCID, streamKey, streamMessage);
+			return;
 
-		HttpRequest request = null;
-		int responseStatusCode;
-		ObjectMapper objectMapper = new ObjectMapper();
+		}
 
-		JsonNode jsonNode = objectMapper.readTree(streamMessage);
+		HttpRequest request = createTargetRequest(message);
+		HttpClient httpClient = SharedHttpClient.forTarget(request.uri());
+		HostCircuitBreaker circuitBreaker = HostCircuitBreaker.forTarget(request.uri());
 
-		// parse the stream message
-		if (jsonNode.has("vaultSecretName")) {
+		HostBulkhead bulkhead = HostBulkhead.forTarget(request.uri());
 
-			vaultSecretName = jsonNode.get("vaultSecretName").asText();
+		if (!circuitBreaker.tryAcquire()) {
+			routeHostUnavailable(request, message, streamKey, streamMessage, errorStreamMapping, errorStreamPublisher);
+			return;
 		}
 
-		if (jsonNode.get("targetRestApi") != null) {
-			targetRestApi = jsonNode.get("targetRestApi").asText();
-		} else {
-			targetApiCallFailed = true;
-			failureMessage = new StringBuilder("targetRestApi node not found in payload. ");
+		try {
+			bulkhead.acquire(deadline.remainingMillis());
+		} catch (RejectedExecutionException e) {
+			circuitBreaker.onCancelled();
+			LOGGER.log(Level.INFO, e.getLocalizedMessage());
+			routeHostUnavailable(request, message, streamKey, streamMessage, errorStreamMapping, errorStreamPublisher);
+			return;
+		} catch (InterruptedException e) {
+			circuitBreaker.onCancelled();
+			throw e;
+		}
+
+		long start = System.nanoTime();
+		HttpResponse<Void> response;
+		try {
+			// the response body is not used, discarding it releases the connection back
+			// to the pool
+			response = httpClient.send(TargetTimeouts.withDeadline(request, deadline), BodyHandlers.discarding());
+		} catch (IOException e) {
+			FunctionMetrics.recordTargetLatency(request.uri(), start);
+			bulkhead.release(System.nanoTime() - start, true);
+			circuitBreaker.onFailure();
+			throw e;
+		} catch (InterruptedException | RuntimeException e) {
+			bulkhead.cancel();
+			circuitBreaker.onCancelled();
+			throw e;
 		}
-		if (jsonNode.has("targetRestApiOperation")) {
 
-			targetRestApiOperation = jsonNode.get("targetRestApiOperation").asText();
-			if (Arrays.stream(OPERATIONS).noneMatch(targetRestApiOperation::equals)) {
-				targetApiCallFailed = true;
-				failureMessage.append("targetRestApiOperation node doesnt contain PUT,POST or DELETE.");
+		FunctionMetrics.recordTargetLatency(request.uri(), start);
+		recordHostOutcome(circuitBreaker, bulkhead, System.nanoTime() - start, response.statusCode());
+		handleResponseStatus(response.statusCode(), message.getVaultSecretName(), streamKey, streamMessage,
+				errorStreamMapping, errorStreamPublisher);
+
+	}
+
+	/**
+	 * @param streamMessage
+	 * @param streamKey
+	 * @param errorStreamMapping
+	 * @param errorStreamPublisher
+	 * @param deadline
+	 * @return CompletableFuture Completes once the target responded and the
+	 *         message is moved to an error stream if needed.
+	 * 
+	 *         This method is the non blocking variant of executeMessage. The
+	 *         target call does not hold a thread. The steps that can block, i.e.
+	 *         parsing, the Vault lookup of the auth token and the error stream
+	 *         writes, run on the task executor, also when the message follows
+	 *         another message of its stream key.
+	 */
+	private CompletableFuture<Void> executeMessageAsync(String streamMessage, String streamKey,
+			Map<String, String> errorStreamMapping, ErrorStreamPublisher errorStreamPublisher,
+			InvocationDeadline deadline) {
+
+		return CompletableFuture.supplyAsync(() -> {
+			try {
+				return sendMessageAsync(streamMessage, streamKey, errorStreamMapping, errorStreamPublisher,
+						deadline);
+			} catch (IOException e) {
+				throw new CompletionException(e);
 			}
+		}, ASYNC_TASK_EXECUTOR).thenCompose(Function.identity());
+	}
 
-		} else {
-			targetApiCallFailed = true;
-			failureMessage.append("  targetRestApiOperation node is not found in payload.");
-		}
+	/**
+	 * @param streamMessage
+	 * @param streamKey
+	 * @param errorStreamMapping
+	 * @param errorStreamPublisher
+	 * @param deadline
+	 * @return CompletableFuture Completes once the target responded and the
+	 *         message is moved to an error stream if needed.
+	 * @throws IOException
+	 * 
+	 *                     This method parses the message and sends it with
+	 *                     sendAsync. It runs on the task executor, and so do the
+	 *                     steps after the bulkhead permit and the response.
+	 */
+	private CompletableFuture<Void> sendMessageAsync(String streamMessage, String streamKey,
+			Map<String, String> errorStreamMapping, ErrorStreamPublisher errorStreamPublisher,
+			InvocationDeadline deadline) throws IOException {
 
-		if (jsonNode.get("targetRestApiPayload") != null) {
-			targetRestApiPayload = jsonNode.get("targetRestApiPayload").toString();
-		}
-		if (targetApiCallFailed) {
-			LOGGER.log(Level.SEVERE, failureMessage.toString());
-			populateErrorStream(streamMessage, streamKey, DEFAULT_ERROR_STREAM_OCID, streamAdminClient);
-			return;
+		// parse the stream message
+		long parseStart = System.nanoTime();
+		DataSyncMessage message = DataSyncMessage.read(streamMessage);
+		String failureMessage = message.validate();
+		FunctionMetrics.recordLatency("parse", parseStart);
+
+		if (failureMessage != null) {
+			LOGGER.log(Level.SEVERE, failureMessage);
+			errorStreamPublisher.add(DEFAULT_ERROR_STREAM_OCID, streamKey, streamMessage);
+			return CompletableFuture.completedFuture(null);
 
 		}
-		// Get the targetRestApiHeaders section of the json payload
-		JsonNode headersNode = jsonNode.get("targetRestApiHeaders");
-		Map<String, String> httpHeaders = new HashMap<>();
 
-		for (int i = 0; i < headersNode.size(); i++) {
-			JsonNode headerNode = headersNode.get(i);
-			httpHeaders.put(headerNode.get("key").asText(), headerNode.get("value").asText());
+		HttpRequest request = createTargetRequest(message);
+		HttpClient httpClient = SharedHttpClient.forTarget(request.uri());
+		HostCircuitBreaker circuitBreaker = HostCircuitBreaker.forTarget(request.uri());
 
+		HostBulkhead bulkhead = HostBulkhead.forTarget(request.uri());
+
+		if (!circuitBreaker.tryAcquire()) {
+			routeHostUnavailable(request, message, streamKey, streamMessage, errorStreamMapping, errorStreamPublisher);
+			return CompletableFuture.completedFuture(null);
 		}
 
-		switch (targetRestApiOperation) {
+		// a call waiting for the bulkhead of its host does not hold a thread either
+		return bulkhead.acquireAsync(deadline.remainingMillis()).handle((permit, ex) -> {
+			if (ex != null) {
+				LOGGER.log(Level.INFO, "No call to {0} permitted: {1}", new Object[] { request.uri(), ex });
+			}
+			return ex == null;
+		}).thenComposeAsync(permitted -> {
+			if (!permitted) {
+				circuitBreaker.onCancelled();
+				routeHostUnavailable(request, message, streamKey, streamMessage, errorStreamMapping,
+						errorStreamPublisher);
+				return CompletableFuture.completedFuture(null);
+			}
 
-		case "PUT": {
-			Builder builder = HttpRequest.newBuilder().PUT(HttpRequest.BodyPublishers.ofString(targetRestApiPayload))
-					.uri(URI.create(targetRestApi));
+			long start = System.nanoTime();
+			CompletableFuture<HttpResponse<Void>> responseFuture;
+			try {
+				responseFuture = httpClient.sendAsync(TargetTimeouts.withDeadline(request, deadline),
+						BodyHandlers.discarding());
+			} catch (RuntimeException e) {
+				bulkhead.cancel();
+				circuitBreaker.onCancelled();
+				throw e;
+			}
 
-			request = constructHttpRequest(builder, httpHeaders, vaultSecretName);
-			break;
+			return responseFuture.whenComplete((response, ex) -> {
+				FunctionMetrics.recordTargetLatency(request.uri(), start);
+				if (ex != null) {
+					bulkhead.release(System.nanoTime() - start, true);
+					circuitBreaker.onFailure();
+				}
+			}).thenAcceptAsync(response -> {
+				recordHostOutcome(circuitBreaker, bulkhead, System.nanoTime() - start, response.statusCode());
+				handleResponseStatus(response.statusCode(), message.getVaultSecretName(), streamKey, streamMessage,
+						errorStreamMapping, errorStreamPublisher);
+			}, ASYNC_TASK_EXECUTOR);
+		}, ASYNC_TASK_EXECUTOR);
 
-		}
+	}
 
-		case "POST": {
+	/**
+	 * @param circuitBreaker
+	 * @param bulkhead
+	 * @param latencyNanos
+	 * @param responseStatusCode
+	 * 
+	 *                           This method reports the outcome of a target call
+	 *                           to the circuit breaker and the bulkhead of its
+	 *                           host.
+	 */
+	private static void recordHostOutcome(HostCircuitBreaker circuitBreaker, HostBulkhead bulkhead,
+			long latencyNanos, int responseStatusCode) {
 
-			Builder builder = HttpRequest.newBuilder().POST(HttpRequest.BodyPublishers.ofString(targetRestApiPayload))
-					.uri(URI.create(targetRestApi));
+		boolean hostFailed = HostCircuitBreaker.isHostFailure(responseStatusCode);
+		bulkhead.release(latencyNanos, hostFailed);
 
-			request = constructHttpRequest(builder, httpHeaders, vaultSecretName);
-			break;
+		if (hostFailed) {
+			circuitBreaker.onFailure();
+		} else {
+			circuitBreaker.onSuccess();
 		}
+	}
 
-		case "DELETE": {
-			Builder builder = HttpRequest.newBuilder().DELETE().uri(URI.create(targetRestApi));
+	/**
+	 * @param request
+	 * @param message
+	 * @param streamKey
+	 * @param streamMessage
+	 * @param errorStreamMapping
+	 * @param errorStreamPublisher
+	 * 
+	 *                             This method moves a message whose target host has
+	 *                             an open circuit breaker or a full bulkhead to the
+	 *                             error stream of a 503 response, without calling
+	 *                             the target.
+	 */
+	private void routeHostUnavailable(HttpRequest request, DataSyncMessage message, String streamKey,
+			String streamMessage, Map<String, String> errorStreamMapping, ErrorStreamPublisher errorStreamPublisher) {
 
-			request = constructHttpRequest(builder, httpHeaders, vaultSecretName);
-			break;
-		}
+		LOGGER.log(Level.WARNING, "Target host of {0} is not accepting calls, message not sent.", request.uri());
+		handleResponseStatus(503, message.getVaultSecretName(), streamKey, streamMessage, errorStreamMapping,
+				errorStreamPublisher);
+	}
 
-		default:
+	/**
+	 * @param message
+	 * @return HttpRequest Returns the target REST API request, or null if the
+	 *         operation is not supported.
+	 * 
+	 *         This method creates the request of the target REST API call for the
+	 *         operation of the message.
+	 */
+	private HttpRequest createTargetRequest(DataSyncMessage message) {
+
+		// the auth token is read from the Vault only if it is not cached
+		HttpRequest request = TargetRequests.create(message, secretCache::get);
+		if (request == null) {
 			LOGGER.log(Level.SEVERE, "Target API not processed.");
 		}
-		HttpResponse<InputStream> response = null;
+		return request;
 
-		response = httpClient.send(request, BodyHandlers.ofInputStream());
+	}
 
-		responseStatusCode = response.statusCode();
+	/**
+	 * @param responseStatusCode
+	 * @param vaultSecretName
+	 * @param streamKey
+	 * @param streamMessage
+	 * @param errorStreamMapping
+	 * @param errorStreamPublisher
+	 * 
+	 *                             This method moves the message to the error
+	 *                             stream mapped to the response status code of
+	 *                             the target, if the call failed.
+	 */
+	private void handleResponseStatus(int responseStatusCode, String vaultSecretName, String streamKey,
+			String streamMessage, Map<String, String> errorStreamMapping, ErrorStreamPublisher errorStreamPublisher) {
+
+		if (responseStatusCode == 401 && !vaultSecretName.equals("")) {
+			// the token may have been rotated, read it again from the Vault next time
+			secretCache.invalidate(vaultSecretName);
+		}
 
 		if ((Family.familyOf(responseStatusCode) == Family.SERVER_ERROR)
 				|| (Family.familyOf(responseStatusCode) == Family.CLIENT_ERROR)) {
@@ -472,43 +1132,18 @@ public class RetryFunction {
 			if (errorStreamMapping.containsKey(String.valueOf(responseStatusCode))) {
 				// move the message to an error stream if a stream corresponding to response
 				// status is defined
-				populateErrorStream(streamMessage, streamKey,
-						errorStreamMapping.get(String.valueOf(responseStatusCode)), streamAdminClient);
+				errorStreamPublisher.add(errorStreamMapping.get(String.valueOf(responseStatusCode)), streamKey,
+						streamMessage);
 
 			} else {
 				// if there is no error stream defined for the REST response code, use the
 				// default
-				populateErrorStream(streamMessage, streamKey, DEFAULT_ERROR_STREAM_OCID, streamAdminClient);
+				errorStreamPublisher.add(DEFAULT_ERROR_STREAM_OCID, streamKey, streamMessage);
 			}
 		}
 
 	}
 
-	/**
-	 * @param builder
-	 * @param httpHeaders
-	 * @param vaultSecretName
-	 * @return HttpRequest
-	 * 
-	 *         This method constructs http request to make the target REST API call
-	 */
-	private HttpRequest constructHttpRequest(Builder builder, Map<String, String> httpHeaders, String vaultSecretName) {
-
-		if (!vaultSecretName.equals("")) {
-			String authorizationHeaderName = "Authorization";
-			// Read the Vault to get the auth token
-			String authToken = getSecretFromVault(vaultSecretName);
-			// add targetRestApiHeaders to the request
-			// add authorization token to the request
-			builder.header(authorizationHeaderName, authToken);
-		}
-
-		httpHeaders.forEach((k, v) -> builder.header(k, v));
-
-		return builder.build();
-
-	}
-
 	/**
 	 * @param vaultSecretName
 	 * @return String Returns the token stored in Vault
@@ -517,66 +1152,27 @@ public class RetryFunction {
 	 *         secretName
 	 */
 	private String getSecretFromVault(String vaultSecretName) {
-		SecretsClient secretsClient = new SecretsClient(provider);
+		SecretsApi secretsClient = OciClients.secretsClient();
 
 		GetSecretBundleByNameRequest getSecretBundleByNameRequest = GetSecretBundleByNameRequest.builder()
 
 				.secretName(vaultSecretName).vaultId(VAULT_OCID).build();
 
 		// get the secret
-		GetSecretBundleByNameResponse getSecretBundleResponse = secretsClient
-				.getSecretBundleByName(getSecretBundleByNameRequest);
+		long start = System.nanoTime();
+		GetSecretBundleByNameResponse getSecretBundleResponse;
+		try {
+			getSecretBundleResponse = secretsClient.getSecretBundleByName(getSecretBundleByNameRequest);
+		} finally {
+			FunctionMetrics.recordLatency("vault", start);
+		}
 
 		// get the bundle content details
 		Base64SecretBundleContentDetails base64SecretBundleContentDetails = (Base64SecretBundleContentDetails) getSecretBundleResponse
 				.getSecretBundle().getSecretBundleContent();
-		secretsClient.close();
 
 		return base64SecretBundleContentDetails.getContent();
 
 	}
 
-	/**
-	 * @param streamMessage
-	 * @param streamKey
-	 * @param errorStreamOCID
-	 * @param StreamAdminClient
-	 * 
-	 *                          This method is used to populate the error stream
-	 *                          with the failed message
-	 *
-	 */
-	private void populateErrorStream(String streamMessage, String streamKey, String errorStreamOCID,
-			StreamAdminClient streamAdminClient) {
-
-		// Construct the stream message
-
-		PutMessagesDetails messagesDetails = PutMessagesDetails.builder().messages(Arrays.asList(
-				PutMessagesDetailsEntry.builder().key(streamKey.getBytes()).value(streamMessage.getBytes()).build()))
-				.build();
-
-		PutMessagesRequest putRequest = PutMessagesRequest.builder().streamId(errorStreamOCID)
-				.putMessagesDetails(messagesDetails).build();
-		// Read the response
-
-		PutMessagesResponse putResponse = StreamClient.builder().stream(getStream(errorStreamOCID, streamAdminClient))
-				.build(provider).putMessages(putRequest);
-		for (PutMessagesResultEntry entry : putResponse.getPutMessagesResult().getEntries()) {
-			if (entry.getError() != null) {
-
-				LOGGER.log(Level.SEVERE, String.format("Put message error  %s, in stream with OCID %s.",
-						entry.getErrorMessage(), errorStreamOCID));
-
-			} else {
-
-				LOGGER.log(Level.INFO,
-						String.format("Message pushed to offset %s, in partition  %s in stream with OCID %s",
-								entry.getOffset(), entry.getPartition(), errorStreamOCID));
-
-			}
-
-		}
-
-	}
-
 }
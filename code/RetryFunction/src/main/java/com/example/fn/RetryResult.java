@@ -0,0 +1,174 @@
+// Copyright (c)  2022,  Oracle and/or its affiliates.
+// Licensed under the Universal Permissive License v 1.0 as shown at https://oss.oracle.com/licenses/upl.
+
+//The progress of a retry call on a stream partition, or on the partitions of a consumer group instance.
+//It is returned to the caller as the response body.
+
+package com.example.fn;
+
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.oracle.bmc.streaming.model.Message;
+
+class RetryResult {
+
+	private long lastReadOffset;
+	private int readMessages;
+	private int successMessages;
+	private int failedMessages;
+	private boolean endOfStream;
+	private int unpublishedMessages;
+	private int errorStatusCode;
+	private String errorMessage;
+	private String consumerGroup;
+	// cursor of the service after the messages read, null if reading stopped
+	// within a page
+	private String nextCursor;
+	private String continuationToken;
+	// last committed offset of every partition read by the consumer group instance
+	private final Map<String, Long> committedOffsets = new TreeMap<>();
+
+	/**
+	 * @param offset
+	 * @param succeeded
+	 * 
+	 *                  This method records a message that was read and retried.
+	 */
+	void recordMessage(long offset, boolean succeeded) {
+
+		lastReadOffset = offset;
+		readMessages++;
+		if (succeeded) {
+			successMessages++;
+		} else {
+			failedMessages++;
+		}
+	}
+
+	/**
+	 * @param consumerGroup
+	 * 
+	 *                      This method marks the result as the progress of a
+	 *                      consumer group, reported by committed offsets.
+	 */
+	void setConsumerGroup(String consumerGroup) {
+		this.consumerGroup = consumerGroup;
+	}
+
+	/**
+	 * @param page
+	 * 
+	 *             This method records that the offsets of a page of messages
+	 *             were committed to the consumer group.
+	 */
+	void recordCommit(List<Message> page) {
+
+		for (Message message : page) {
+			committedOffsets.merge(message.getPartition(), message.getOffset(), Math::max);
+		}
+	}
+
+	void setNextCursor(String nextCursor) {
+		this.nextCursor = nextCursor;
+	}
+
+	String getNextCursor() {
+		return nextCursor;
+	}
+
+	void setContinuationToken(String continuationToken) {
+		this.continuationToken = continuationToken;
+	}
+
+	void setEndOfStream(boolean endOfStream) {
+		this.endOfStream = endOfStream;
+	}
+
+	void setUnpublishedMessages(int unpublishedMessages) {
+		this.unpublishedMessages = unpublishedMessages;
+	}
+
+	/**
+	 * @param statusCode
+	 * @param message
+	 * 
+	 *                   This method records that reading the partition failed.
+	 */
+	void setFailure(int statusCode, String message) {
+		this.errorStatusCode = statusCode;
+		this.errorMessage = message;
+	}
+
+	boolean isFailed() {
+		return errorMessage != null;
+	}
+
+	boolean isEndOfStream() {
+		return endOfStream;
+	}
+
+	int getReadMessages() {
+		return readMessages;
+	}
+
+	long getLastReadOffset() {
+		return lastReadOffset;
+	}
+
+	/**
+	 * @return String Returns the no. of processed and failed messages, the offset
+	 *         up to which messages were read and if end of stream is reached. For
+	 *         a consumer group the committed offsets are returned instead of the
+	 *         offset read. The continuation token, if any, is the position to
+	 *         continue from.
+	 */
+	String toJson() {
+
+		if (isFailed()) {
+			return "{\"error\":" + errorStatusCode + ",\"errorMessage\":"
+					+ JsonNodeFactory.instance.textNode(errorMessage) + "}";
+		}
+
+		if (readMessages == 0 && endOfStream) {
+			return continuationToken == null ? "{\"endOfStream\": true}"
+					: "{\"endOfStream\": true,\"continuationToken\":\"" + continuationToken + "\"}";
+		}
+
+		StringBuilder result = new StringBuilder("{");
+
+		if (consumerGroup != null) {
+			result.append("\"consumerGroup\":").append(JsonNodeFactory.instance.textNode(consumerGroup))
+					.append(",\"committedOffsets\":{");
+			committedOffsets.forEach((partition, offset) -> {
+				if (result.charAt(result.length() - 1) != '{') {
+					result.append(',');
+				}
+				result.append('"').append(partition).append("\":").append(offset);
+			});
+			result.append('}');
+		} else {
+			result.append("\"lastReadOffset\":").append(lastReadOffset);
+		}
+
+		result.append(" ,\"processedmessages\":").append(successMessages).append(",\"failedMessages\":")
+				.append(failedMessages);
+
+		if (endOfStream) {
+			result.append(",\"endOfStream\": true");
+		}
+		if (unpublishedMessages > 0) {
+			result.append(",\"unpublishedMessages\":").append(unpublishedMessages);
+		}
+		if (continuationToken != null) {
+			// the token is base64url, it needs no escaping
+			result.append(",\"continuationToken\":\"").append(continuationToken).append('"');
+		}
+
+		return result.append("}").toString();
+
+	}
+
+}
@@ -0,0 +1,193 @@
+// Copyright (c)  2022,  Oracle and/or its affiliates.
+// Licensed under the Universal Permissive License v 1.0 as shown at https://oss.oracle.com/licenses/upl.
+
+//Caches the auth tokens read from the Vault for the lifetime of the Function container.
+//Entries expire after a configurable TTL and are refreshed in the background shortly before that.
+//Concurrent lookups of a secret that is not cached result in a single Vault call.
+
+package com.example.fn;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+class SecretCache {
+
+	private static final Logger LOGGER = Logger.getLogger(SecretCache.class.getName());
+	private static final long TTL_NANOS = TimeUnit.SECONDS
+			.toNanos(FunctionConfig.intValue("secret_cache_ttl_seconds", 300));
+	// at most half the TTL, so that a secret is not refreshed as soon as it is read
+	private static final long REFRESH_AHEAD_NANOS = Math.min(TTL_NANOS / 2,
+			TimeUnit.SECONDS.toNanos(FunctionConfig.intValue("secret_cache_refresh_ahead_seconds", 60)));
+	private static final int MAX_ENTRIES = FunctionConfig.intValue("secret_cache_max_entries", 1000);
+
+	private final Function<String, String> secretLoader;
+	// secrets in least recently used order
+	private final Map<String, CachedSecret> secrets = new LinkedHashMap<>(16, 0.75f, true) {
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<String, CachedSecret> eldest) {
+			return size() > MAX_ENTRIES;
+		}
+	};
+	// Vault calls in progress, per secret name
+	private final ConcurrentMap<String, CompletableFuture<String>> loads = new ConcurrentHashMap<>();
+	// No. of invalidations per secret name, guarded by secrets. A Vault call
+	// started before an invalidation does not put its result in the cache.
+	private final Map<String, Long> generations = new HashMap<>();
+	private final ExecutorService refreshExecutor = Executors.newSingleThreadExecutor(runnable -> {
+		Thread thread = new Thread(runnable, "secret-refresh");
+		thread.setDaemon(true);
+		return thread;
+	});
+
+	/**
+	 * @param secretLoader
+	 * 
+	 *                     The loader reads the secret content from the Vault.
+	 */
+	SecretCache(Function<String, String> secretLoader) {
+		this.secretLoader = secretLoader;
+	}
+
+	/**
+	 * @param vaultSecretName
+	 * @return String Returns the secret content
+	 * 
+	 *         This method returns the cached secret, reading it from the Vault
+	 *         when it is not cached or expired.
+	 */
+	String get(String vaultSecretName) {
+
+		CachedSecret cachedSecret;
+		synchronized (secrets) {
+			cachedSecret = secrets.get(vaultSecretName);
+		}
+
+		long now = System.nanoTime();
+
+		if (cachedSecret != null && now - cachedSecret.expiresAt < 0) {
+			if (now - cachedSecret.refreshAt >= 0 && cachedSecret.refreshing.compareAndSet(false, true)) {
+				// read the secret again before it expires, once per cached value.
+				// The cached value is used meanwhile
+				refreshExecutor.execute(() -> refresh(vaultSecretName));
+			}
+			return cachedSecret.content;
+		}
+
+		return load(vaultSecretName);
+
+	}
+
+	/**
+	 * @param vaultSecretName
+	 * 
+	 *                        This method removes a secret from the cache, for
+	 *                        example when the target rejected it.
+	 */
+	void invalidate(String vaultSecretName) {
+
+		synchronized (secrets) {
+			secrets.remove(vaultSecretName);
+			generations.merge(vaultSecretName, 1L, Long::sum);
+		}
+		// a lookup after this one reads the secret again instead of waiting for a
+		// Vault call that may return the rejected secret
+		loads.remove(vaultSecretName);
+	}
+
+	private void refresh(String vaultSecretName) {
+
+		CachedSecret cachedSecret;
+		synchronized (secrets) {
+			cachedSecret = secrets.get(vaultSecretName);
+		}
+		// the secret was invalidated or read again since the refresh was requested
+		if (cachedSecret == null || System.nanoTime() - cachedSecret.refreshAt < 0) {
+			return;
+		}
+
+		try {
+			load(vaultSecretName);
+		} catch (RuntimeException e) {
+			LOGGER.log(Level.WARNING, "Refresh of secret {0} failed. {1}",
+					new Object[] { vaultSecretName, e.getLocalizedMessage() });
+		}
+	}
+
+	/**
+	 * @param vaultSecretName
+	 * @return String
+	 * 
+	 *         This method reads the secret from the Vault. If the secret is
+	 *         already being read by another thread, it waits for that result.
+	 */
+	private String load(String vaultSecretName) {
+
+		CompletableFuture<String> load = new CompletableFuture<>();
+		CompletableFuture<String> inProgress = loads.putIfAbsent(vaultSecretName, load);
+
+		if (inProgress != null) {
+			try {
+				return inProgress.join();
+			} catch (CompletionException e) {
+				throw e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause() : e;
+			}
+		}
+
+		try {
+			long generation;
+			synchronized (secrets) {
+				generation = generations.getOrDefault(vaultSecretName, 0L);
+			}
+
+			String content = secretLoader.apply(vaultSecretName);
+			long now = System.nanoTime();
+
+			synchronized (secrets) {
+				if (generations.getOrDefault(vaultSecretName, 0L) == generation) {
+					secrets.put(vaultSecretName,
+							new CachedSecret(content, now + TTL_NANOS - REFRESH_AHEAD_NANOS, now + TTL_NANOS));
+				}
+			}
+			load.complete(content);
+			return content;
+
+		} catch (RuntimeException e) {
+			load.completeExceptionally(e);
+			throw e;
+		} finally {
+			loads.remove(vaultSecretName, load);
+		}
+
+	}
+
+	private static final class CachedSecret {
+
+		private final String content;
+		private final long refreshAt;
+		private final long expiresAt;
+		// set once a refresh of the value is requested. A failed refresh is not
+		// repeated, the secret is read again when it expires.
+		private final AtomicBoolean refreshing = new AtomicBoolean();
+
+		CachedSecret(String content, long refreshAt, long expiresAt) {
+			this.content = content;
+			this.refreshAt = refreshAt;
+			this.expiresAt = expiresAt;
+		}
+	}
+
+}
@@ -0,0 +1,247 @@
+// Copyright (c)  2022,  Oracle and/or its affiliates.
+// Licensed under the Universal Permissive License v 1.0 as shown at https://oss.oracle.com/licenses/upl.
+
+//Reads the pages of messages of a stream partition in the background, while the messages already read are retried.
+//The pages read and not yet taken are held in a bounded queue, reading pauses when the queue is full.
+
+package com.example.fn;
+
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import com.oracle.bmc.model.BmcException;
+import com.oracle.bmc.streaming.model.Message;
+import com.oracle.bmc.streaming.requests.GetMessagesRequest;
+import com.oracle.bmc.streaming.responses.GetMessagesResponse;
+
+class StreamPagePrefetcher implements AutoCloseable {
+
+	private static final Logger LOGGER = Logger.getLogger(StreamPagePrefetcher.class.getName());
+	// No. of pages read ahead of the page being retried
+	private static final int PREFETCH_PAGES = Math.max(1, FunctionConfig.intValue("retry_prefetch_pages", 2));
+	private static final ExecutorService READER_EXECUTOR = createReaderExecutor();
+
+	private final StreamApi streamClient;
+	private final String streamOCID;
+	private final int maxMessages;
+	private final int pageLimit;
+	private final InvocationDeadline deadline;
+	private final Supplier<String> fallbackCursor;
+	private final BlockingQueue<Page> pages = new ArrayBlockingQueue<>(PREFETCH_PAGES);
+	private volatile boolean closed;
+	private boolean endOfStream;
+	private boolean finished;
+	// cursor after the last page taken
+	private String nextCursor;
+
+	/**
+	 * @param streamClient
+	 * @param streamOCID
+	 * @param cursor
+	 * @param maxMessages
+	 * @param pageLimit
+	 * @param deadline
+	 * @param fallbackCursor
+	 *
+	 *                       Reading starts at the cursor and stops once
+	 *                       maxMessages messages are read, the end of the stream
+	 *                       is reached or the deadline passes. A page has at most
+	 *                       pageLimit messages. If the service does not accept
+	 *                       the cursor, reading starts at the fallback cursor
+	 *                       instead, when one is given.
+	 */
+	StreamPagePrefetcher(StreamApi streamClient, String streamOCID, String cursor, int maxMessages, int pageLimit,
+			InvocationDeadline deadline, Supplier<String> fallbackCursor) {
+		this.streamClient = streamClient;
+		this.streamOCID = streamOCID;
+		this.maxMessages = maxMessages;
+		this.pageLimit = pageLimit;
+		this.deadline = deadline;
+		this.fallbackCursor = fallbackCursor;
+		this.nextCursor = cursor;
+
+		READER_EXECUTOR.execute(() -> readPages(cursor));
+	}
+
+	/**
+	 * @return List Returns the next page of messages, or null if there are no
+	 *         more pages.
+	 *
+	 *         This method blocks until the next page is read, at most until the
+	 *         deadline. A page not read by then counts as no more pages, it is
+	 *         read again by the next invocation. A failure of the GetMessages call
+	 *         is rethrown here.
+	 */
+	List<Message> next() {
+
+		if (finished) {
+			return null;
+		}
+
+		Page page;
+		try {
+			page = pages.poll(Math.max(0, deadline.remainingMillis()), TimeUnit.MILLISECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while reading stream " + streamOCID, e);
+		}
+
+		if (page == null) {
+			LOGGER.log(Level.WARNING, "No page of stream {0} read before the deadline.", streamOCID);
+			finished = true;
+			return null;
+		}
+
+		if (page.failure != null) {
+			finished = true;
+			throw page.failure;
+		}
+		if (page.messages == null) {
+			finished = true;
+			endOfStream = page.endOfStream;
+		}
+		if (page.nextCursor != null) {
+			nextCursor = page.nextCursor;
+		}
+		return page.messages;
+	}
+
+	/**
+	 * @return String Returns the cursor after the last page taken, the cursor
+	 *         reading started at if no page was taken.
+	 */
+	String getNextCursor() {
+		return nextCursor;
+	}
+
+	/**
+	 * @return boolean Returns true if reading stopped at the end of the stream,
+	 *         rather than at maxMessages or the deadline.
+	 */
+	boolean isEndOfStream() {
+		return endOfStream;
+	}
+
+	/**
+	 * This method stops reading further pages. The pages not yet taken are
+	 * dropped.
+	 */
+	@Override
+	public void close() {
+		closed = true;
+		pages.clear();
+	}
+
+	private void readPages(String cursor) {
+
+		String pageCursor = cursor;
+		int readMessages = 0;
+		// set once reading moved to the fallback cursor, which is not replaced again
+		boolean fallenBack = false;
+
+		try {
+			while (!closed && readMessages < maxMessages && !deadline.isExpired()) {
+
+				GetMessagesRequest getRequest = GetMessagesRequest.builder().streamId(streamOCID)
+						.cursor(pageCursor).limit(Math.min(maxMessages - readMessages, pageLimit)).build();
+
+				long start = System.nanoTime();
+				GetMessagesResponse getResponse;
+				try {
+					getResponse = streamClient.getMessages(getRequest);
+				} catch (BmcException e) {
+					if (readMessages > 0 || fallenBack || fallbackCursor == null || e.getStatusCode() != 400) {
+						throw e;
+					}
+					// e.g. an expired cursor of a continuation token
+					LOGGER.log(Level.INFO, "Cursor not accepted, reading from the offset instead. {0}",
+							e.getLocalizedMessage());
+					pageCursor = fallbackCursor.get();
+					fallenBack = true;
+					continue;
+				}
+				FunctionMetrics.recordLatency("get_messages", start);
+				List<Message> messages = getResponse.getItems();
+
+				if (messages.isEmpty()) {
+					put(new Page(null, true, null, getResponse.getOpcNextCursor()));
+					return;
+				}
+
+				if (!put(new Page(messages, false, null, getResponse.getOpcNextCursor()))) {
+					return;
+				}
+				readMessages += messages.size();
+				pageCursor = getResponse.getOpcNextCursor();
+			}
+
+			put(new Page(null, false, null, null));
+
+		} catch (Throwable e) {
+			// the last page is queued whatever failed, so that next does not wait for it
+			LOGGER.log(Level.SEVERE, "Reading stream {0} failed. {1}",
+					new Object[] { streamOCID, e.getLocalizedMessage() });
+			put(new Page(null, false, e instanceof RuntimeException ? (RuntimeException) e
+					: new IllegalStateException("Reading stream " + streamOCID + " failed", e), null));
+		}
+
+	}
+
+	private boolean put(Page page) {
+		try {
+			while (!closed) {
+				if (pages.offer(page, 100, TimeUnit.MILLISECONDS)) {
+					return true;
+				}
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		return false;
+	}
+
+	/**
+	 * @return ExecutorService
+	 *
+	 *         This method creates the executor that reads the pages. It is shared
+	 *         by all the invocations of a container.
+	 */
+	private static ExecutorService createReaderExecutor() {
+
+		AtomicInteger threadCount = new AtomicInteger();
+
+		return Executors.newCachedThreadPool(runnable -> {
+			Thread thread = new Thread(runnable, "prefetch-" + threadCount.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		});
+
+	}
+
+	private static final class Page {
+
+		// null marks the last element of the queue
+		private final List<Message> messages;
+		private final boolean endOfStream;
+		private final RuntimeException failure;
+		// cursor after the messages, also set on the page marking the end of the
+		// stream
+		private final String nextCursor;
+
+		Page(List<Message> messages, boolean endOfStream, RuntimeException failure, String nextCursor) {
+			this.messages = messages;
+			this.endOfStream = endOfStream;
+			this.failure = failure;
+			this.nextCursor = nextCursor;
+		}
+	}
+
+}
@@ -0,0 +1,71 @@
+// Copyright (c)  2022,  Oracle and/or its affiliates.
+// Licensed under the Universal Permissive License v 1.0 as shown at https://oss.oracle.com/licenses/upl.
+
+//Builds the target application request of a message: the operation and payload, the auth token
+//stored in the Vault for the vaultSecretName of the message, and the targetRestApiHeaders.
+
+package com.example.fn;
+
+import java.net.URI;
+import java.net.http.HttpRequest;
+import java.net.http.HttpRequest.BodyPublishers;
+import java.net.http.HttpRequest.Builder;
+import java.util.function.Function;
+
+import com.example.fn.DataSyncMessage.Header;
+
+final class TargetRequests {
+
+	private TargetRequests() {
+	}
+
+	/**
+	 * @param message
+	 * @param authTokens
+	 * @return HttpRequest Returns the target REST API request, or null if the
+	 *         operation is not supported.
+	 *
+	 *         authTokens returns the auth token stored in the Vault for a
+	 *         vaultSecretName, it is only called if the message has one.
+	 */
+	static HttpRequest create(DataSyncMessage message, Function<String, String> authTokens) {
+
+		URI targetUri = URI.create(message.getTargetRestApi());
+		Builder builder;
+
+		// build the request based on the operation
+		switch (message.getTargetRestApiOperation()) {
+
+		case PUT:
+			builder = HttpRequest.newBuilder(targetUri).PUT(BodyPublishers.ofString(message.getTargetRestApiPayload()));
+			break;
+
+		case POST:
+			builder = HttpRequest.newBuilder(targetUri)
+					.POST(BodyPublishers.ofString(message.getTargetRestApiPayload()));
+			break;
+
+		case DELETE:
+			builder = HttpRequest.newBuilder(targetUri).DELETE();
+			break;
+
+		default:
+			return null;
+		}
+
+		String vaultSecretName = message.getVaultSecretName();
+		if (!vaultSecretName.equals("")) {
+			// add the auth token read from the Vault to the request
+			builder.header("Authorization", authTokens.apply(vaultSecretName));
+		}
+
+		// add targetRestApiHeaders to the request
+		for (Header header : message.getTargetRestApiHeaders()) {
+			builder.header(header.getKey(), header.getValue());
+		}
+
+		return builder.build();
+
+	}
+
+}
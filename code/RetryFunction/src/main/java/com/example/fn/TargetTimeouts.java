@@ -0,0 +1,116 @@
+// Copyright (c)  2022,  Oracle and/or its affiliates.
+// Licensed under the Universal Permissive License v 1.0 as shown at https://oss.oracle.com/licenses/upl.
+
+//Holds the connect and request timeouts of the target application calls.
+//Both have a default that can be overridden per target host, so one hung target cannot hold a call
+//longer than its own timeouts. The request timeout of a call is further limited by the invocation deadline.
+
+package com.example.fn;
+
+import java.net.URI;
+import java.net.http.HttpRequest;
+import java.net.http.HttpRequest.BodyPublishers;
+import java.net.http.HttpRequest.Builder;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+final class TargetTimeouts {
+
+	private static final Logger LOGGER = Logger.getLogger(TargetTimeouts.class.getName());
+	private static final Duration CONNECT_TIMEOUT = Duration
+			.ofMillis(Math.max(1, FunctionConfig.intValue("target_connect_timeout_millis", 5000)));
+	private static final Duration REQUEST_TIMEOUT = Duration
+			.ofMillis(Math.max(1, FunctionConfig.intValue("target_request_timeout_millis", 30000)));
+	private static final Duration[] DEFAULT_TIMEOUTS = { CONNECT_TIMEOUT, REQUEST_TIMEOUT };
+	// host or host:port mapped to its connect and request timeout
+	private static final Map<String, Duration[]> TARGET_TIMEOUTS = parseTargetTimeouts(
+			FunctionConfig.stringValue("target_timeouts", ""));
+
+	private TargetTimeouts() {
+	}
+
+	/**
+	 * @param targetUri
+	 * @return Duration Returns the connect timeout of the target host.
+	 */
+	static Duration connectTimeout(URI targetUri) {
+		return timeoutsOf(targetUri)[0];
+	}
+
+	/**
+	 * @param targetUri
+	 * @return Duration Returns the request timeout of the target host.
+	 */
+	static Duration requestTimeout(URI targetUri) {
+		return timeoutsOf(targetUri)[1];
+	}
+
+	/**
+	 * @param request
+	 * @param deadline
+	 * @return HttpRequest Returns a copy of the request whose timeout is the
+	 *         request timeout of its host, or the time left until the deadline if
+	 *         that is shorter.
+	 */
+	static HttpRequest withDeadline(HttpRequest request, InvocationDeadline deadline) {
+
+		Duration timeout = requestTimeout(request.uri());
+		Duration remaining = Duration.ofMillis(Math.max(1, deadline.remainingMillis()));
+		if (remaining.compareTo(timeout) < 0) {
+			timeout = remaining;
+		}
+
+		Builder builder = HttpRequest.newBuilder(request.uri())
+				.method(request.method(), request.bodyPublisher().orElse(BodyPublishers.noBody()))
+				.expectContinue(request.expectContinue()).timeout(timeout);
+		request.version().ifPresent(builder::version);
+		request.headers().map().forEach((name, values) -> values.forEach(value -> builder.header(name, value)));
+
+		return builder.build();
+	}
+
+	private static Duration[] timeoutsOf(URI targetUri) {
+
+		Duration[] timeouts = null;
+		if (targetUri.getAuthority() != null) {
+			timeouts = TARGET_TIMEOUTS.get(targetUri.getAuthority().toLowerCase());
+		}
+		if (timeouts == null && targetUri.getHost() != null) {
+			timeouts = TARGET_TIMEOUTS.get(targetUri.getHost().toLowerCase());
+		}
+		return timeouts != null ? timeouts : DEFAULT_TIMEOUTS;
+	}
+
+	/**
+	 * @param value
+	 * @return Map Returns the timeouts of the entries in the form
+	 *         host[:port]=connectMillis/requestMillis, separated by commas.
+	 *         Invalid entries are logged and skipped.
+	 */
+	private static Map<String, Duration[]> parseTargetTimeouts(String value) {
+
+		Map<String, Duration[]> timeouts = new HashMap<>();
+
+		Arrays.stream(value.split(",")).map(String::trim).filter(entry -> !entry.isEmpty()).forEach(entry -> {
+			String[] hostAndTimeouts = entry.split("=");
+			String[] millis = hostAndTimeouts.length == 2 ? hostAndTimeouts[1].split("/") : new String[0];
+
+			if (millis.length != 2 || !millis[0].trim().matches("\\d+") || !millis[1].trim().matches("\\d+")) {
+				LOGGER.log(Level.WARNING, "Invalid target_timeouts entry {0}, using the default timeouts.", entry);
+				return;
+			}
+
+			timeouts.put(hostAndTimeouts[0].trim().toLowerCase(),
+					new Duration[] { Duration.ofMillis(Math.max(1, Long.parseLong(millis[0].trim()))),
+							Duration.ofMillis(Math.max(1, Long.parseLong(millis[1].trim()))) });
+		});
+
+		return Collections.unmodifiableMap(timeouts);
+	}
+
+}
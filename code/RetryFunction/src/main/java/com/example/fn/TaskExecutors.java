@@ -0,0 +1,123 @@
+// Copyright (c)  2022,  Oracle and/or its affiliates.
+// Licensed under the Universal Permissive License v 1.0 as shown at https://oss.oracle.com/licenses/upl.
+
+//Creates the executors that run the blocking work of a Function container, such as Vault, Streaming and target calls.
+//With thread_mode set to virtual and a Java runtime that has virtual threads, every task gets its own virtual thread
+//and the no. of tasks running at the same time is capped for the container. Otherwise a pool of platform threads is used.
+
+package com.example.fn;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+final class TaskExecutors {
+
+	private static final Logger LOGGER = Logger.getLogger(TaskExecutors.class.getName());
+	// Maximum no. of tasks running on virtual threads at the same time in a container
+	private static final int VIRTUAL_THREAD_MAX_CONCURRENCY = Math.max(1,
+			FunctionConfig.intValue("virtual_thread_max_concurrency", 256));
+	private static final Semaphore VIRTUAL_THREAD_PERMITS = new Semaphore(VIRTUAL_THREAD_MAX_CONCURRENCY);
+	// null unless virtual threads are configured and available
+	private static final ExecutorService VIRTUAL_THREAD_EXECUTOR = createVirtualThreadExecutor();
+
+	private TaskExecutors() {
+	}
+
+	/**
+	 * @return boolean Returns true if the tasks run on virtual threads.
+	 */
+	static boolean isVirtual() {
+		return VIRTUAL_THREAD_EXECUTOR != null;
+	}
+
+	/**
+	 * @return int Returns the maximum no. of tasks running on virtual threads at
+	 *         the same time.
+	 */
+	static int getVirtualThreadMaxConcurrency() {
+		return VIRTUAL_THREAD_MAX_CONCURRENCY;
+	}
+
+	/**
+	 * @return Executor Returns an executor running every task on a virtual
+	 *         thread, or null if virtual threads are not used.
+	 */
+	static Executor virtualThreads() {
+		return isVirtual() ? TaskExecutors::executeOnVirtualThread : null;
+	}
+
+	/**
+	 * @param name
+	 * @param platformThreads
+	 * @return Executor
+	 *
+	 *         This method returns an executor running every task on a virtual
+	 *         thread, or a fixed pool of platformThreads daemon threads named
+	 *         after name if virtual threads are not used. The tasks must not
+	 *         wait for other tasks of the executor, as a task waiting for the
+	 *         concurrency cap could never run.
+	 */
+	static Executor create(String name, int platformThreads) {
+
+		if (isVirtual()) {
+			return virtualThreads();
+		}
+
+		AtomicInteger threadCount = new AtomicInteger();
+
+		return Executors.newFixedThreadPool(Math.max(1, platformThreads), runnable -> {
+			Thread thread = new Thread(runnable, name + "-" + threadCount.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		});
+
+	}
+
+	private static void executeOnVirtualThread(Runnable task) {
+
+		VIRTUAL_THREAD_EXECUTOR.execute(() -> {
+			// a virtual thread waiting for a permit does not hold a platform thread
+			VIRTUAL_THREAD_PERMITS.acquireUninterruptibly();
+			try {
+				task.run();
+			} finally {
+				VIRTUAL_THREAD_PERMITS.release();
+			}
+		});
+
+	}
+
+	/**
+	 * @return ExecutorService
+	 *
+	 *         This method creates the virtual thread per task executor. It is
+	 *         looked up by reflection, so that the Functions still build and run
+	 *         on Java 11.
+	 */
+	private static ExecutorService createVirtualThreadExecutor() {
+
+		if (!"virtual".equalsIgnoreCase(FunctionConfig.stringValue("thread_mode", "platform"))) {
+			return null;
+		}
+
+		try {
+			Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+			LOGGER.log(Level.INFO, "Running tasks on virtual threads, at most {0} at the same time.",
+					VIRTUAL_THREAD_MAX_CONCURRENCY);
+			return (ExecutorService) factory.invoke(null);
+
+		} catch (ReflectiveOperationException e) {
+			LOGGER.log(Level.WARNING, "Virtual threads are not available on Java {0}, using platform threads.",
+					System.getProperty("java.version"));
+			return null;
+		}
+
+	}
+
+}